@@ -0,0 +1,170 @@
+package functiondrawer;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pomiary JMH parsera, evaluatorów, próbkowania, rysowania wykresu i zapisu obrazu.
+ * Każdy pomiar działa w osobnej maszynie wirtualnej (Fork), jest rozgrzewany (Warmup), a wynik zwracany z metody
+ * trafia do Blackhole JMH, więc JIT nie usunie obliczenia. Czas jest podawany na jedną operację, a dla obliczenia
+ * bloku punktów, dzięki OperationsPerInvocation, na jeden punkt.
+ *
+ * Uruchomienie z katalogu projektu:
+ * mvn package -pl bench -am
+ * java -jar bench/target/benchmarks.jar [wyrażenie regularne nazwy pomiaru] [opcje JMH, np. -p backend=batch]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xms1g", "-Xmx1g"})
+public class Benchmarks {
+    private final static int EVALUATION_SAMPLES = 100_000;
+    private final static String[] PAINTED_FUNCTIONS = {"sin(x)*x"};
+
+    /**
+     * Parsowanie, optymalizacja i kompilacja wzoru, bez pamięci podręcznej
+     */
+    @Benchmark
+    public Expression compilation(Formula formula) throws ParserException {
+        return new MathParser().compile(formula.formula);
+    }
+
+    /**
+     * Obliczenie skompilowanego wzoru dla bloku EVALUATION_SAMPLES punktów, czas podawany na punkt.
+     * Wartości wielomianów dla x do 101 przekraczają zakres, więc zamiast przerywać obliczenie stają się przerwami
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVALUATION_SAMPLES)
+    public double[] evaluation(Evaluation evaluation) throws ParserException {
+        evaluation.evaluator.applyAsDouble(evaluation.xs, evaluation.ys, 0, evaluation.xs.length);
+        return evaluation.ys;
+    }
+
+    /**
+     * Pełne parseAndGetResult ze stałym krokiem na przedziale od -10 do 10, bez pamięci podręcznej
+     */
+    @Benchmark
+    public SampleSeries sampling(Sampling sampling) throws ParserException {
+        MathParser mathParser = new MathParser();
+        mathParser.setParallel(sampling.parallel);
+        return mathParser.parseAndGetResult(sampling.formula, -10, 10, sampling.step, null);
+    }
+
+    /**
+     * Narysowanie wykresu przez DrawingPanel do obrazu w pamięci
+     */
+    @Benchmark
+    public int painting(Painting painting) {
+        painting.drawingPanel.updateFunctionPoints(painting.series, PAINTED_FUNCTIONS);
+        return painting.drawingPanel.getBufferedGraphic().getRGB(0, 0);
+    }
+
+    /**
+     * Zapis narysowanego wykresu tak jak w FileSaver, ale do pamięci, aby nie mierzyć dysku
+     */
+    @Benchmark
+    public int encoding(Encoding encoding) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(encoding.image, encoding.format, output);
+        return output.size();
+    }
+
+    /**
+     * Wzory obejmujące wielomiany, zagnieżdżoną trygonometrię oraz pierwiastki i logarytmy
+     */
+    @State(Scope.Benchmark)
+    public static class Formula {
+        @Param({"3x^3-2x^2+x-7", "x^5-4x^3+2x+1", "sin(x)*cos(2x)+tan(x/3)", "sin(sin(sin(x)))+cos(x)^2",
+                "sqrt(log(x^2+1)+1)", "log(sqrt(x^2+4)+x^2)"})
+        String formula;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Evaluation extends Formula {
+        @Param({"interpreter", "method_handle", "batch"})
+        String backend;
+        Evaluator evaluator;
+        double[] xs, ys;
+
+        @Setup
+        public void setup() throws ParserException {
+            MathParser mathParser = new MathParser();
+            mathParser.setBackend(Evaluator.Backend.fromName(backend, Evaluator.Backend.INTERPRETER));
+            mathParser.setEvaluationPolicy(EvaluationPolicy.GAPS);
+            evaluator = mathParser.createEvaluator(formula);
+
+            xs = new double[EVALUATION_SAMPLES];
+            ys = new double[EVALUATION_SAMPLES];
+            for (int i = 0; i < xs.length; i++)
+                xs[i] = 1 + i * 0.001;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sampling extends Formula {
+        @Param({"0.1", "0.01", "0.001"})
+        float step;
+        @Param({"false", "true"})
+        boolean parallel;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Painting {
+        @Param({"400x300", "800x600", "1920x1080"})
+        String size;
+        @Param({"2000", "200000", "2000000"})
+        int samples;
+        List<SampleSeries> series;
+        DrawingPanel drawingPanel;
+
+        @Setup
+        public void setup() {
+            series = Collections.singletonList(createSeries(samples));
+            drawingPanel = createPanel(size, series);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Encoding {
+        @Param({"400x300", "800x600", "1920x1080"})
+        String size;
+        @Param({"PNG", "JPG"})
+        String format;
+        BufferedImage image;
+
+        @Setup
+        public void setup() {
+            image = createPanel(size, Collections.singletonList(createSeries(200_000))).getBufferedGraphic();
+        }
+    }
+
+    private static SampleSeries createSeries(int samples) {
+        double[] xs = new double[samples], ys = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            xs[i] = -10 + 20.0 * i / (samples - 1);
+            ys[i] = Math.sin(xs[i]) * xs[i];
+        }
+        return new SampleSeries(xs, ys);
+    }
+
+    /**
+     * @param size - rozmiar panelu w postaci szerokośćxwysokość
+     */
+    private static DrawingPanel createPanel(String size, List<SampleSeries> series) {
+        String[] dimensions = size.split("x");
+        DrawingPanel drawingPanel = new DrawingPanel();
+        drawingPanel.setSize(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+        drawingPanel.setBackground(Color.WHITE);
+        drawingPanel.setFunctionPoints(series, PAINTED_FUNCTIONS);
+        return drawingPanel;
+    }
+}
@@ -0,0 +1,320 @@
+package functiondrawer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Adaptacyjne wyznaczanie punktów funkcji.
+ * Przedział zostaje najpierw podzielony na niewielką ilość równych odcinków, a następnie każdy odcinek jest rekurencyjnie
+ * dzielony na pół tylko wtedy, gdy wartość w jego środku odbiega od prostej łączącej końce o więcej niż tolerancja
+ * lub gdy na jednym z końców funkcja przestaje być określona. Dla prostych i łagodnych funkcji daje to o rzędy wielkości
+ * mniej obliczeń niż stały krok, a w miejscach gwałtownych zmian (np. bieguny tangensa) punkty są gęstsze.
+ * Jeśli evaluator obsługuje arytmetykę przedziałową, każdy odcinek jest przed podziałem ograniczany przedziałem:
+ * - odcinek, na którym funkcja nie jest nigdzie określona, nie jest dzielony,
+ * - odcinek, którego wartości leżą w całości daleko poza zakresem wykresu (OFF_SCREEN_FACTOR razy dalej niż największa
+ *   wartość z zakresu), nie jest dzielony, co zatrzymuje zagęszczanie punktów wokół biegunów,
+ * - odcinek jest dzielony również wtedy, gdy ograniczenie wychodzi poza wartości na końcach i w środku o więcej niż
+ *   SPIKE_FACTOR progów, ponieważ między punktami może kryć się wąski pik, którego próbkowanie by nie zauważyło,
+ * - na największej głębokości podziału taki pik jest odszukiwany samym podziałem ograniczeń na pół i dodawany jako punkt.
+ */
+final class AdaptiveSampler {
+    private final static int INITIAL_INTERVALS = 1024;
+    private final static int INTERVALS_PER_TASK = 32;
+    private final static double OFF_SCREEN_FACTOR = 10;
+    private final static double SPIKE_FACTOR = 10;
+    private final static int MAX_SPIKE_STEPS = 64;
+    private final double tolerance;
+    private final int maxDepth;
+    private final boolean parallel;
+
+    /**
+     * @param tolerance - dopuszczalne odchylenie od prostej, jako ułamek zakresu wartości funkcji
+     * @param maxDepth - maksymalna ilość podziałów jednego odcinka
+     * @param parallel - true jeśli odcinki mają być liczone równolegle
+     */
+    AdaptiveSampler(double tolerance, int maxDepth, boolean parallel) {
+        this.tolerance = tolerance;
+        this.maxDepth = maxDepth;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Wyznacza punkty funkcji w przedziale
+     * @param evaluator - skompilowane wyrażenie
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param parserProgress - aktualny postęp operacji
+     * @return - seria punktów uporządkowana rosnąco względem x
+     */
+    SampleSeries sample(Evaluator evaluator, double startValue, double endValue, MathParser.ParserProgress parserProgress) throws ParserException {
+        return sample(evaluator, startValue, endValue, 1, MathParser.getValueRange(evaluator, startValue, endValue), parserProgress);
+    }
+
+    /**
+     * Wyznacza punkty funkcji we fragmencie przedziału, dzieląc go początkowo na odpowiednio mniej odcinków,
+     * aby ich długość była taka sama jak w całym przedziale
+     * @param evaluator - skompilowane wyrażenie
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param fraction - stosunek długości fragmentu do długości całego przedziału
+     * @param valueRange - zakres wartości funkcji w całym przedziale, wyznaczony przez MathParser.getValueRange, lub null
+     * @param parserProgress - aktualny postęp operacji
+     * @return - seria punktów uporządkowana rosnąco względem x
+     */
+    SampleSeries sample(Evaluator evaluator, double startValue, double endValue, double fraction, Interval valueRange,
+                        MathParser.ParserProgress parserProgress) throws ParserException {
+        int intervals = endValue > startValue ? (int) Math.max(1, Math.min(INITIAL_INTERVALS, Math.ceil(INITIAL_INTERVALS * fraction))) : 0;
+        double[] xs = new double[intervals + 1], ys = new double[intervals + 1];
+
+        for (int i = 0; i <= intervals; i++)
+            xs[i] = intervals == 0 ? startValue : startValue + (endValue - startValue) * i / intervals;
+
+        evaluator.applyAsDouble(xs, ys, 0, xs.length);
+
+        Run run = new Run(evaluator, xs, ys, tolerance * getExtent(ys, valueRange), getOffScreenLimit(valueRange), parserProgress);
+        SampleSeries result = new SampleSeries(xs.length * 2);
+        result.add(xs[0], ys[0]);
+
+        if (!parallel || intervals <= INTERVALS_PER_TASK) {
+            run.sampleIntervals(0, intervals, result);
+            return result;
+        }
+
+        try {
+            result.addAll(ForkJoinPool.commonPool().invoke(run.new Task(0, intervals)));
+            return result;
+
+        } catch (UncheckedParserException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Zwraca szerokość zakresu wartości funkcji, a jeśli nie został on wyznaczony, zakres skończonych wartości
+     * w punktach początkowego podziału lub 1, jeśli nie da się go wyznaczyć
+     */
+    private static double getExtent(double[] ys, Interval valueRange) {
+        if (valueRange != null && valueRange.getMax() > valueRange.getMin())
+            return valueRange.getMax() - valueRange.getMin();
+
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double y : ys)
+            if (!Double.isNaN(y) && !Double.isInfinite(y)) {
+                min = Math.min(min, y);
+                max = Math.max(max, y);
+            }
+
+        double extent = max - min;
+        return extent > 0 && !Double.isInfinite(extent) ? extent : 1;
+    }
+
+    /**
+     * Zwraca wartość bezwzględną, powyżej której wartości funkcji na pewno nie będą widoczne na wykresie
+     */
+    private static double getOffScreenLimit(Interval valueRange) {
+        return valueRange != null ? OFF_SCREEN_FACTOR * Math.max(1, valueRange.getMagnitude()) : Double.POSITIVE_INFINITY;
+    }
+
+    private static boolean isDefined(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    /**
+     * Zwraca mniejszą z określonych wartości lub nieskończoność, jeśli żadna nie jest określona
+     */
+    private static double getLow(double first, double second) {
+        if (!isDefined(first))
+            return isDefined(second) ? second : Double.POSITIVE_INFINITY;
+        return isDefined(second) ? Math.min(first, second) : first;
+    }
+
+    /**
+     * Zwraca większą z określonych wartości lub minus nieskończoność, jeśli żadna nie jest określona
+     */
+    private static double getHigh(double first, double second) {
+        if (!isDefined(first))
+            return isDefined(second) ? second : Double.NEGATIVE_INFINITY;
+        return isDefined(second) ? Math.max(first, second) : first;
+    }
+
+    /**
+     * Pojedyncze wykonanie próbkowania: początkowy podział, próg odchylenia i sumowany postęp
+     */
+    private final class Run {
+        private final Evaluator evaluator;
+        private final double[] xs, ys;
+        private final double threshold, offScreenLimit;
+        private final MathParser.ParserProgress parserProgress;
+        private int completed = 0, progress = 0;
+
+        Run(Evaluator evaluator, double[] xs, double[] ys, double threshold, double offScreenLimit, MathParser.ParserProgress parserProgress) {
+            this.evaluator = evaluator;
+            this.xs = xs;
+            this.ys = ys;
+            this.threshold = threshold;
+            this.offScreenLimit = offScreenLimit;
+            this.parserProgress = parserProgress;
+        }
+
+        /**
+         * Dodaje do serii punkty odcinków od numeru from (włącznie) do numeru to (wyłącznie), bez punktu początkowego
+         */
+        void sampleIntervals(int from, int to, SampleSeries result) throws ParserException {
+            for (int i = from; i < to; i++) {
+                MathParser.checkCancelled(parserProgress);
+                sampleInterval(xs[i], ys[i], xs[i + 1], ys[i + 1], 0, result);
+                result.add(xs[i + 1], ys[i + 1]);
+            }
+            onIntervalsFinished(to - from);
+        }
+
+        /**
+         * Dodaje punkty leżące wewnątrz odcinka, dzieląc go rekurencyjnie tam gdzie wykres się zagina
+         */
+        private void sampleInterval(double a, double fa, double b, double fb, int depth, SampleSeries result) throws ParserException {
+            Interval bounds = evaluator.applyAsInterval(a, b);
+            if (bounds != null && (bounds.isEmpty() || isOffScreen(bounds)))
+                return;
+
+            if (depth >= maxDepth) {
+                if (mayHideSpike(bounds, fa, Double.NaN, fb))
+                    addSpike(a, b, Math.max(bounds.getMin(), -offScreenLimit) >= getLow(fa, fb) - SPIKE_FACTOR * threshold, result);
+                return;
+            }
+
+            double middle = (a + b) / 2;
+            double fMiddle = evaluator.applyAsDouble(middle);
+
+            if (!needsSubdivision(fa, fMiddle, fb) && !mayHideSpike(bounds, fa, fMiddle, fb))
+                return;
+
+            sampleInterval(a, fa, middle, fMiddle, depth + 1, result);
+            result.add(middle, fMiddle);
+            sampleInterval(middle, fMiddle, b, fb, depth + 1, result);
+        }
+
+        /**
+         * Odcinek wymaga podziału gdy środek odbiega od prostej lub funkcja jest określona tylko na części odcinka
+         */
+        private boolean needsSubdivision(double fa, double fMiddle, double fb) {
+            if (isDefined(fa) && isDefined(fMiddle) && isDefined(fb))
+                return Math.abs(fMiddle - (fa + fb) / 2) > threshold;
+
+            return isDefined(fa) || isDefined(fMiddle) || isDefined(fb);
+        }
+
+        private boolean isOffScreen(Interval bounds) {
+            return bounds.getMin() > offScreenLimit || bounds.getMax() < -offScreenLimit;
+        }
+
+        /**
+         * Odcinek może ukrywać pik, gdy widoczna część ograniczenia wychodzi poza wartości obliczone na końcach
+         * i w środku o więcej niż SPIKE_FACTOR progów lub gdy funkcja jest określona w całym odcinku, choć żadna z tych
+         * wartości nie jest. Odcinek bez żadnej określonej wartości, którego ograniczenie dopuszcza wartości nieokreślone
+         * (np. wartości odcięte przez EvaluationPolicy), jest uznawany za rozstrzygnięty
+         */
+        private boolean mayHideSpike(Interval bounds, double fa, double fMiddle, double fb) {
+            if (bounds == null)
+                return false;
+
+            double low = getLow(fa, getLow(fMiddle, fb)), high = getHigh(fa, getHigh(fMiddle, fb));
+            if (low > high)
+                return !bounds.isUndefined();
+
+            double margin = SPIKE_FACTOR * threshold;
+            return Math.max(bounds.getMin(), -offScreenLimit) < low - margin || Math.min(bounds.getMax(), offScreenLimit) > high + margin;
+        }
+
+        /**
+         * Odszukuje ukryty pik, dzieląc odcinek na pół i wybierając połowę z większym ograniczeniem górnym
+         * (lub mniejszym dolnym), aż wartość w środku wybranej połowy zbliży się do jej ograniczenia na SPIKE_FACTOR progów
+         * lub zostanie osiągnięta dokładność double, a następnie dodaje punkt w jego miejscu.
+         * Punkt, który przy osiągniętej dokładności trafiłby na koniec odcinka, nie jest dodawany, bo koniec ma już punkt
+         * @param maximum - true jeśli szukane jest maksimum, false jeśli minimum
+         */
+        private void addSpike(double a, double b, boolean maximum, SampleSeries result) throws ParserException {
+            double margin = SPIKE_FACTOR * threshold;
+            double x = (a + b) / 2, y = evaluator.applyAsDouble(x);
+
+            for (int step = 0; step < MAX_SPIKE_STEPS && x > a && x < b; step++) {
+                Interval left = evaluator.applyAsInterval(a, x), right = evaluator.applyAsInterval(x, b);
+                Interval chosen;
+                if (maximum ? left.getMax() >= right.getMax() : left.getMin() <= right.getMin()) {
+                    chosen = left;
+                    b = x;
+                } else {
+                    chosen = right;
+                    a = x;
+                }
+
+                x = (a + b) / 2;
+                y = evaluator.applyAsDouble(x);
+                if (maximum ? y >= chosen.getMax() - margin : y <= chosen.getMin() + margin)
+                    break;
+            }
+
+            if (x > a && x < b)
+                result.add(x, y);
+        }
+
+        private synchronized void onIntervalsFinished(int count) {
+            completed += count;
+            int actualProgress = MathParser.getPercentage(completed, xs.length - 1);
+
+            if (actualProgress > progress && parserProgress != null && actualProgress <= 100) {
+                progress = actualProgress;
+                parserProgress.onProgressChange(progress);
+            }
+        }
+
+        /**
+         * Równoległe próbkowanie grupy odcinków; błąd parsera najwcześniejszego odcinka jest przekazywany dalej
+         */
+        private final class Task extends RecursiveTask<SampleSeries> {
+            private final static long serialVersionUID = 1L;
+            private final int from, to;
+
+            Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected SampleSeries compute() {
+                if (to - from <= INTERVALS_PER_TASK) {
+                    SampleSeries result = new SampleSeries((to - from) * 2);
+                    try {
+                        sampleIntervals(from, to, result);
+                    } catch (ParserException e) {
+                        throw new UncheckedParserException(e);
+                    }
+                    return result;
+                }
+
+                int middle = (from + to) >>> 1;
+                Task left = new Task(from, middle), right = new Task(middle, to);
+                invokeAll(left, right);
+
+                SampleSeries result = left.join();
+                result.addAll(right.join());
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Opakowuje błąd parsera, aby mógł zostać przekazany przez zadania ForkJoin
+     */
+    private static final class UncheckedParserException extends RuntimeException {
+        private final static long serialVersionUID = 1L;
+
+        UncheckedParserException(ParserException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized ParserException getCause() {
+            return (ParserException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package functiondrawer;
+
+import java.util.Arrays;
+
+/**
+ * Evaluator obliczający wyrażenie dla całych tablic wartości x.
+ * Każdy węzeł drzewa jest liczony od razu dla bloku punktów w prostej pętli po tablicy, którą kompilator JIT
+ * zamienia na instrukcje wektorowe (SIMD) dla dodawania, odejmowania, mnożenia, dzielenia, negacji i pierwiastka.
+ * Wspólne podwyrażenia są liczone raz dla bloku do osobnych tablic slotów.
+ * Pojedyncze wartości i ograniczenia na przedziałach są obliczane przez interpretację drzewa.
+ */
+final class BatchEvaluator implements Evaluator {
+    private final static int BLOCK_SIZE = 256;
+    private final Expression expression, body;
+    private final Expression[] definitions;
+    /**
+     * Bufory i sloty są przydzielane raz dla każdego wątku, tak jak sloty w Expression.Shared, ponieważ ten sam
+     * evaluator liczy równolegle fragmenty przedziału, a jest wywoływany dla każdego bloku punktów
+     */
+    private final ThreadLocal<double[][]> buffers, slots;
+
+    /**
+     * @param expression - drzewo wyrażenia
+     */
+    BatchEvaluator(Expression expression) {
+        this.expression = expression;
+
+        if (expression instanceof Expression.Shared) {
+            this.definitions = ((Expression.Shared) expression).definitions;
+            this.body = ((Expression.Shared) expression).body;
+        } else {
+            this.definitions = new Expression[0];
+            this.body = expression;
+        }
+
+        int bufferCount = getBufferCount(body, definitions);
+        this.buffers = ThreadLocal.withInitial(() -> new double[bufferCount][BLOCK_SIZE]);
+        this.slots = ThreadLocal.withInitial(() -> new double[definitions.length][BLOCK_SIZE]);
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        return expression.evaluate(x);
+    }
+
+    @Override
+    public Interval applyAsInterval(double from, double to) {
+        return expression.applyAsInterval(from, to);
+    }
+
+    @Override
+    public void applyAsDouble(double[] xs, double[] ys, int from, int to) {
+        double[][] buffers = this.buffers.get(), slots = this.slots.get();
+
+        for (int offset = from; offset < to; offset += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, to - offset);
+
+            for (int i = 0; i < definitions.length; i++)
+                evaluate(definitions[i], xs, offset, slots[i], 0, length, buffers, 0, slots);
+
+            evaluate(body, xs, offset, ys, offset, length, buffers, 0, slots);
+        }
+    }
+
+    /**
+     * Oblicza węzeł dla bloku punktów i zapisuje wynik do tablicy out.
+     * Lewy argument działania jest liczony bezpośrednio do tablicy wynikowej, a prawy do bufora o numerze depth.
+     * @param xs - wartości x
+     * @param xOffset - pozycja pierwszej wartości x
+     * @param out - tablica wynikowa
+     * @param outOffset - pozycja pierwszego wyniku
+     * @param length - ilość punktów w bloku
+     * @param buffers - bufory pomocnicze
+     * @param depth - numer pierwszego wolnego bufora
+     * @param slots - obliczone dla bloku wartości wspólnych podwyrażeń
+     */
+    private static void evaluate(Expression expression, double[] xs, int xOffset, double[] out, int outOffset, int length,
+                                 double[][] buffers, int depth, double[][] slots) {
+        if (expression instanceof Expression.Constant)
+            Arrays.fill(out, outOffset, outOffset + length, ((Expression.Constant) expression).value);
+
+        else if (expression instanceof Expression.Variable)
+            System.arraycopy(xs, xOffset, out, outOffset, length);
+
+        else if (expression instanceof Expression.Slot)
+            System.arraycopy(slots[((Expression.Slot) expression).index], 0, out, outOffset, length);
+
+        else if (expression instanceof Expression.Negation) {
+            evaluate(((Expression.Negation) expression).operand, xs, xOffset, out, outOffset, length, buffers, depth, slots);
+            negate(out, outOffset, length);
+
+        } else if (expression instanceof Expression.Function) {
+            Expression.Function function = (Expression.Function) expression;
+            evaluate(function.argument, xs, xOffset, out, outOffset, length, buffers, depth, slots);
+            calculateFunction(function.type, out, outOffset, length);
+
+        } else {
+            Expression.Operation operation = (Expression.Operation) expression;
+            double[] right = buffers[depth];
+            evaluate(operation.left, xs, xOffset, out, outOffset, length, buffers, depth, slots);
+            evaluate(operation.right, xs, xOffset, right, 0, length, buffers, depth + 1, slots);
+            calculateOperation(operation.operator, out, outOffset, right, length);
+        }
+    }
+
+    private static void negate(double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++)
+            values[i] = -values[i];
+    }
+
+    /**
+     * Wykonuje działanie dla całego bloku: out = out (działanie) right
+     */
+    private static void calculateOperation(char operator, double[] out, int offset, double[] right, int length) {
+        switch (operator) {
+            case '+':
+                for (int i = 0; i < length; i++)
+                    out[offset + i] += right[i];
+                break;
+
+            case '-':
+                for (int i = 0; i < length; i++)
+                    out[offset + i] -= right[i];
+                break;
+
+            case '*':
+                for (int i = 0; i < length; i++)
+                    out[offset + i] *= right[i];
+                break;
+
+            case '/':
+                for (int i = 0; i < length; i++)
+                    out[offset + i] /= right[i];
+                break;
+
+            default:
+                for (int i = 0; i < length; i++)
+                    out[offset + i] = Math.pow(out[offset + i], right[i]);
+        }
+    }
+
+    /**
+     * Oblicza funkcję matematyczną dla całego bloku
+     */
+    private static void calculateFunction(int type, double[] values, int offset, int length) {
+        switch (type) {
+            case Expression.Function.SQRT:
+                for (int i = offset; i < offset + length; i++)
+                    values[i] = Math.sqrt(values[i]);
+                break;
+
+            case Expression.Function.SINE:
+                for (int i = offset; i < offset + length; i++)
+                    values[i] = Math.sin(values[i]);
+                break;
+
+            case Expression.Function.COSINE:
+                for (int i = offset; i < offset + length; i++)
+                    values[i] = Math.cos(values[i]);
+                break;
+
+            case Expression.Function.TANGENT:
+                for (int i = offset; i < offset + length; i++)
+                    values[i] = Math.tan(values[i]);
+                break;
+
+            default:
+                for (int i = offset; i < offset + length; i++)
+                    values[i] = Math.log(values[i]);
+        }
+    }
+
+    /**
+     * Zwraca ilość buforów potrzebnych do obliczenia ciała wyrażenia i wszystkich definicji wspólnych podwyrażeń
+     */
+    private static int getBufferCount(Expression body, Expression[] definitions) {
+        int bufferCount = getBufferCount(body);
+        for (Expression definition : definitions)
+            bufferCount = Math.max(bufferCount, getBufferCount(definition));
+        return bufferCount;
+    }
+
+    /**
+     * Zwraca ilość buforów potrzebnych do obliczenia węzła, czyli największe zagłębienie prawych argumentów działań
+     */
+    private static int getBufferCount(Expression expression) {
+        if (expression instanceof Expression.Negation)
+            return getBufferCount(((Expression.Negation) expression).operand);
+
+        if (expression instanceof Expression.Function)
+            return getBufferCount(((Expression.Function) expression).argument);
+
+        if (expression instanceof Expression.Operation) {
+            Expression.Operation operation = (Expression.Operation) expression;
+            return Math.max(getBufferCount(operation.left), getBufferCount(operation.right) + 1);
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,199 @@
+package functiondrawer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rysowanie wykresów bez okna aplikacji, np. na serwerze bez ekranu (java.awt.headless=true).
+ * Zadania są czytane z pliku podanego jako argument lub ze standardowego wejścia, po jednym w linii:
+ *
+ * startValue endValue width height path expression
+ *
+ * np. "-10 10 800 600 wykresy/sin.png sin(x); cos(x)". Wzór jest ostatni, więc może zawierać spacje i kilka funkcji
+ * oddzielonych średnikiem. Puste linie i linie zaczynające się od # są pomijane, a format obrazu (PNG lub JPG)
+ * wynika z rozszerzenia pliku.
+ * Wykresy są rysowane tym samym kodem co w aplikacji (DrawingPanel) do obrazu w pamięci, a zadania wykonuje pula
+ * functiondrawer.workers wątków (domyślnie po jednym na procesor), współdzielących pamięć podręczną skompilowanych wzorów.
+ * Po zakończeniu wypisywana jest ilość wykresów i punktów oraz przepustowość.
+ */
+public final class BatchRenderer {
+    private final static int WORKER_COUNT = Integer.getInteger("functiondrawer.workers", Runtime.getRuntime().availableProcessors());
+    private final static long CACHE_SIZE_MB = Long.getLong("functiondrawer.cacheSize", 64);
+    private final static int JOB_FIELDS = 6;
+    private final CalculationCache cache = new CalculationCache(CACHE_SIZE_MB * 1024 * 1024);
+    private final AdaptiveSampler adaptiveSampler = FunctionDrawer.createAdaptiveSampler(false);
+    private final AtomicLong sampleCount = new AtomicLong(), renderNanos = new AtomicLong();
+
+    private BatchRenderer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        try (InputStream input = args.length > 0 && !args[0].equals("-") ? new FileInputStream(args[0]) : System.in) {
+            int failed = new BatchRenderer().renderAll(input);
+            if (failed > 0)
+                System.exit(1);
+        }
+    }
+
+    /**
+     * Odczytuje wszystkie zadania, wykonuje je na puli wątków i wypisuje podsumowanie
+     * @param input - zadania, po jednym w linii
+     * @return - ilość zadań zakończonych błędem
+     */
+    private int renderAll(InputStream input) throws IOException, InterruptedException {
+        List<Job> jobs = readJobs(input);
+        // wygląd komponentów Swing jest ładowany przy pierwszym panelu, więc następuje to raz, przed startem wątków
+        new DrawingPanel();
+
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, WORKER_COUNT));
+        List<Future<?>> results = new ArrayList<>();
+        for (Job job : jobs)
+            results.add(workers.submit(() -> {
+                render(job);
+                return null;
+            }));
+
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (Exception e) {
+                failed++;
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println(String.format(Strings.batchJobError, jobs.get(i).line, getMessage(cause)));
+            }
+        }
+        workers.shutdown();
+
+        printSummary(jobs.size() - failed, failed, System.nanoTime() - start);
+        return failed;
+    }
+
+    /**
+     * Odczytuje zadania, zgłaszając błąd dla linii w niepoprawnym formacie
+     */
+    private static List<Job> readJobs(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Job> jobs = new ArrayList<>();
+        String text;
+
+        for (int line = 1; (text = reader.readLine()) != null; line++) {
+            text = text.trim();
+            if (text.isEmpty() || text.startsWith("#"))
+                continue;
+
+            String[] fields = text.split("\\s+", JOB_FIELDS);
+            if (fields.length < JOB_FIELDS)
+                throw new IOException(String.format(Strings.batchJobError, line, Strings.batchJobFormat));
+
+            try {
+                jobs.add(new Job(line, Double.parseDouble(fields[0]), Double.parseDouble(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), new File(fields[4]), fields[5]));
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format(Strings.batchJobError, line, Strings.batchJobFormat));
+            }
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Oblicza funkcje zadania, rysuje je do obrazu tak jak panel aplikacji i zapisuje obraz do pliku
+     */
+    private void render(Job job) throws ParserException, IOException {
+        long start = System.nanoTime();
+        String[] functions = job.getFunctions();
+        if (functions.length == 0 || job.width <= 0 || job.height <= 0)
+            throw new IOException(Strings.batchJobFormat);
+        MathParser mathParser = FunctionDrawer.createMathParser(cache, false);
+        List<SampleSeries> result = FunctionDrawer.calculate(mathParser, functions,
+                Math.min(job.startValue, job.endValue), Math.max(job.startValue, job.endValue), adaptiveSampler, null);
+
+        DrawingPanel drawingPanel = new DrawingPanel();
+        drawingPanel.setSize(job.width, job.height);
+        drawingPanel.setBackground(Color.WHITE);
+        drawingPanel.setFunctionPoints(result, functions);
+        BufferedImage image = drawingPanel.getBufferedGraphic();
+
+        File parent = job.path.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException(Strings.fileSavedError + ": " + parent);
+        if (!FileSaver.writeImage(image, job.getFormat(), job.path))
+            throw new IOException(Strings.fileSavedError + ": " + job.path);
+
+        for (SampleSeries series : result)
+            sampleCount.addAndGet(series.size());
+        renderNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private static String getMessage(Throwable throwable) {
+        if (throwable instanceof ParserException)
+            return FunctionDrawer.getErrorMessage((ParserException) throwable);
+        return throwable.getMessage() != null ? throwable.getMessage() : throwable.toString();
+    }
+
+    /**
+     * Wypisuje ilość wykresów i punktów, czas całkowity, przepustowość i średni czas jednego wykresu
+     * @param done - ilość zapisanych wykresów
+     * @param failed - ilość zadań zakończonych błędem
+     * @param nanos - czas wykonania wszystkich zadań
+     */
+    private void printSummary(int done, int failed, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.println(String.format(Locale.ROOT, Strings.batchSummary, done, failed, WORKER_COUNT, seconds,
+                done / seconds, sampleCount.get(), sampleCount.get() / seconds,
+                done > 0 ? renderNanos.get() / 1e6 / done : 0));
+    }
+
+    /**
+     * Pojedyncze zadanie: przedział, rozmiar obrazu, plik wynikowy i wzór
+     */
+    private static final class Job {
+        private final int line, width, height;
+        private final double startValue, endValue;
+        private final File path;
+        private final String equalisation;
+
+        Job(int line, double startValue, double endValue, int width, int height, File path, String equalisation) {
+            this.line = line;
+            this.startValue = startValue;
+            this.endValue = endValue;
+            this.width = width;
+            this.height = height;
+            this.path = path;
+            this.equalisation = equalisation;
+        }
+
+        /**
+         * Dzieli wzór na funkcje oddzielone średnikiem, tak jak w aplikacji
+         */
+        String[] getFunctions() {
+            return Presenter.splitFunctions(equalisation);
+        }
+
+        /**
+         * @return - format obrazu wynikający z rozszerzenia pliku, domyślnie PNG
+         */
+        String getFormat() {
+            String name = path.getName().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jpg") || name.endsWith(".jpeg") ? "JPG" : "PNG";
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package functiondrawer;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Ograniczona pamięć podręczna skompilowanych wyrażeń i wyznaczonych serii punktów.
+ * Obie mapy są uporządkowane od najdawniej używanego wpisu (LRU). Wyrażeń jest co najwyżej MAX_EXPRESSIONS,
+ * a serie punktów są usuwane, gdy ich łączny rozmiar w bajtach przekroczy ustalony limit.
+ * Zapisane serie są współdzielone, więc po umieszczeniu w pamięci podręcznej nie mogą być modyfikowane.
+ */
+final class CalculationCache {
+    private final static int MAX_EXPRESSIONS = 128;
+    private final Map<String, Expression> expressions = new LinkedHashMap<String, Expression>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+            return size() > MAX_EXPRESSIONS;
+        }
+    };
+    private final Map<Key, SampleSeries> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long bytes = 0, hits = 0, misses = 0;
+
+    /**
+     * @param maxBytes - maksymalny łączny rozmiar przechowywanych serii punktów w bajtach
+     */
+    CalculationCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Zwraca skompilowane wyrażenie lub null, jeśli wzór nie był jeszcze kompilowany
+     * @param equalisation - wzór po uzupełnieniu brakujących znaków mnożenia
+     */
+    synchronized Expression getExpression(String equalisation) {
+        return expressions.get(equalisation);
+    }
+
+    /**
+     * Zapamiętuje skompilowane wyrażenie, usuwając najdawniej używane, jeśli jest ich za dużo
+     * @param equalisation - wzór po uzupełnieniu brakujących znaków mnożenia
+     * @param expression - skompilowane wyrażenie
+     */
+    synchronized void putExpression(String equalisation, Expression expression) {
+        expressions.put(equalisation, expression);
+    }
+
+    /**
+     * Zwraca zapamiętaną serię punktów lub null, zliczając trafienia i chybienia
+     * @param key - wzór, przedział i sposób próbkowania
+     */
+    synchronized SampleSeries getResult(Key key) {
+        SampleSeries result = results.get(key);
+
+        if (result != null)
+            hits++;
+        else
+            misses++;
+
+        return result;
+    }
+
+    /**
+     * Zapamiętuje serię punktów i usuwa najdawniej używane serie, dopóki łączny rozmiar przekracza limit.
+     * Seria większa niż cały limit nie zostaje zapamiętana.
+     * @param key - wzór, przedział i sposób próbkowania
+     * @param result - wyznaczona seria punktów
+     */
+    synchronized void putResult(Key key, SampleSeries result) {
+        long footprint = result.getFootprint();
+        if (footprint > maxBytes)
+            return;
+
+        SampleSeries previous = results.put(key, result);
+        if (previous != null)
+            bytes -= previous.getFootprint();
+        bytes += footprint;
+
+        Iterator<SampleSeries> iterator = results.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= iterator.next().getFootprint();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Wyszukuje serię tej samej funkcji, obliczonej tym samym backendem z tą samą polityką, wyznaczoną tym samym sposobem próbkowania w przedziale, który ma największą
+     * część wspólną z przedziałem klucza. Wyszukiwanie nie zmienia kolejności wpisów ani liczników trafień.
+     * @param key - wzór, przedział i sposób próbkowania
+     * @return - klucz i seria lub null, jeśli żaden zapamiętany przedział nie nakłada się na przedział klucza
+     */
+    synchronized Map.Entry<Key, SampleSeries> findOverlapping(Key key) {
+        Map.Entry<Key, SampleSeries> best = null;
+        double bestOverlap = 0;
+
+        for (Map.Entry<Key, SampleSeries> entry : results.entrySet()) {
+            Key candidate = entry.getKey();
+            double overlap = Math.min(key.endValue, candidate.endValue) - Math.max(key.startValue, candidate.startValue);
+
+            if (candidate.isSameFunction(key) && candidate.sampling.equals(key.sampling)
+                    && !entry.getValue().isEmpty() && overlap > bestOverlap) {
+                best = new AbstractMap.SimpleImmutableEntry<>(entry);
+                bestOverlap = overlap;
+            }
+        }
+
+        return best;
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return - łączny rozmiar przechowywanych serii punktów w bajtach
+     */
+    synchronized long getByteCount() {
+        return bytes;
+    }
+
+    synchronized int getResultCount() {
+        return results.size();
+    }
+
+    /**
+     * Klucz serii punktów: wzór po uzupełnieniu brakujących znaków mnożenia, backend i polityka obsługi niepoprawnych
+     * wartości, przedział i sposób próbkowania, czyli krok dla próbkowania ze stałym krokiem lub obiekt próbkowania
+     * adaptacyjnego
+     */
+    static final class Key {
+        private final String equalisation;
+        private final Evaluator.Backend backend;
+        private final EvaluationPolicy evaluationPolicy;
+        private final double startValue, endValue;
+        private final Object sampling;
+
+        /**
+         * @param equalisation - wzór po uzupełnieniu brakujących znaków mnożenia
+         * @param backend - backend, którym obliczono serię
+         * @param evaluationPolicy - polityka obsługi niepoprawnych wartości
+         * @param startValue - wartość początkowa
+         * @param endValue - wartość końcowa
+         * @param sampling - krok lub obiekt próbkowania adaptacyjnego
+         */
+        Key(String equalisation, Evaluator.Backend backend, EvaluationPolicy evaluationPolicy, double startValue,
+            double endValue, Object sampling) {
+            this.equalisation = equalisation;
+            this.backend = backend;
+            this.evaluationPolicy = evaluationPolicy;
+            this.startValue = startValue;
+            this.endValue = endValue;
+            this.sampling = sampling;
+        }
+
+        double getStartValue() {
+            return startValue;
+        }
+
+        double getEndValue() {
+            return endValue;
+        }
+
+        /**
+         * Sprawdza, czy oba klucze opisują ten sam wzór obliczony tym samym backendem z tą samą polityką
+         */
+        boolean isSameFunction(Key key) {
+            return equalisation.equals(key.equalisation) && backend == key.backend
+                    && evaluationPolicy.equals(key.evaluationPolicy);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key))
+                return false;
+
+            Key key = (Key) object;
+            return isSameFunction(key) && Double.compare(startValue, key.startValue) == 0
+                    && Double.compare(endValue, key.endValue) == 0 && sampling.equals(key.sampling);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(equalisation, backend, evaluationPolicy, startValue, endValue, sampling);
+        }
+
+        @Override
+        public String toString() {
+            return equalisation + " " + backend + " " + evaluationPolicy + " [" + startValue + ", " + endValue + "] " + sampling;
+        }
+    }
+}
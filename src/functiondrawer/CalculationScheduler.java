@@ -0,0 +1,60 @@
+package functiondrawer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Planista obliczeń działający na jednym wątku roboczym.
+ * Zlecenie nowego obliczenia anuluje poprzednie: trwające obliczenie przerywa się przy najbliższym sprawdzeniu
+ * stanu anulowania, a oczekujące w kolejce zostaje pominięte. Dzięki temu liczony jest zawsze tylko najnowszy wzór i przedział.
+ */
+final class CalculationScheduler {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "function-calculation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Cancellation current;
+
+    /**
+     * Zleca obliczenie, anulując wszystkie wcześniej zlecone
+     * @param calculation - obliczenie do wykonania
+     */
+    synchronized void submit(Calculation calculation) {
+        cancel();
+        Cancellation cancellation = new Cancellation();
+        current = cancellation;
+
+        worker.execute(() -> {
+            if (!cancellation.isCancelled())
+                calculation.calculate(cancellation);
+        });
+    }
+
+    /**
+     * Anuluje aktualnie zlecone obliczenie
+     */
+    synchronized void cancel() {
+        if (current != null)
+            current.cancel();
+    }
+
+    interface Calculation {
+        void calculate(Cancellation cancellation);
+    }
+
+    /**
+     * Stan anulowania pojedynczego obliczenia, sprawdzany w pętli wyznaczania punktów
+     */
+    static final class Cancellation {
+        private volatile boolean cancelled = false;
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
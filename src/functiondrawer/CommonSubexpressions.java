@@ -0,0 +1,139 @@
+package functiondrawer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eliminacja wspólnych podwyrażeń.
+ * Identyczne poddrzewa zostają scalone w jeden węzeł (drzewo staje się grafem), a każdy węzeł używany przez więcej niż
+ * jednego rodzica zostaje przeniesiony do osobnego slotu. Dla wyrażenia sin(x)^2 + sin(x)*cos(x) + cos(x)^2
+ * funkcje sin(x) i cos(x) są więc obliczane tylko raz na punkt.
+ */
+final class CommonSubexpressions {
+    private final Map<Expression, Expression> uniqueNodes = new HashMap<>();
+    private final Map<Expression, Integer> parentCounts = new IdentityHashMap<>();
+    private final Map<Expression, Integer> slotIndexes = new IdentityHashMap<>();
+    private final List<Expression> definitions = new ArrayList<>();
+
+    private CommonSubexpressions() {
+    }
+
+    /**
+     * Zwraca wyrażenie, w którym powtarzające się poddrzewa są obliczane raz i odczytywane ze slotów.
+     * Jeśli w drzewie nie ma powtórzeń, zwraca je bez zmian.
+     * @param expression - drzewo wyrażenia
+     */
+    static Expression eliminate(Expression expression) throws ParserException {
+        CommonSubexpressions elimination = new CommonSubexpressions();
+        Expression root = elimination.merge(expression);
+        elimination.countParents(root);
+        elimination.assignSlots(root);
+
+        if (elimination.slotIndexes.isEmpty())
+            return expression;
+
+        Expression body = elimination.rebuild(root);
+        return new Expression.Shared(elimination.definitions.toArray(new Expression[0]), body);
+    }
+
+    /**
+     * Scala identyczne poddrzewa, zwracając dla każdego z nich jeden wspólny obiekt
+     */
+    private Expression merge(Expression expression) throws ParserException {
+        Expression merged = expression;
+
+        if (expression instanceof Expression.Negation)
+            merged = new Expression.Negation(merge(((Expression.Negation) expression).operand));
+
+        else if (expression instanceof Expression.Function) {
+            Expression.Function function = (Expression.Function) expression;
+            merged = new Expression.Function(function.name, merge(function.argument));
+
+        } else if (expression instanceof Expression.Operation) {
+            Expression.Operation operation = (Expression.Operation) expression;
+            merged = new Expression.Operation(operation.operator, merge(operation.left), merge(operation.right));
+        }
+
+        Expression unique = uniqueNodes.putIfAbsent(merged, merged);
+        return unique != null ? unique : merged;
+    }
+
+    /**
+     * Zlicza, ilu różnych rodziców ma każdy węzeł scalonego grafu
+     */
+    private void countParents(Expression expression) {
+        for (Expression child : getChildren(expression)) {
+            Integer count = parentCounts.get(child);
+            parentCounts.put(child, count == null ? 1 : count + 1);
+
+            if (count == null)
+                countParents(child);
+        }
+    }
+
+    /**
+     * Nadaje numery slotów węzłom o wielu rodzicach, najpierw dzieciom, potem rodzicom
+     */
+    private void assignSlots(Expression expression) throws ParserException {
+        for (Expression child : getChildren(expression))
+            if (!slotIndexes.containsKey(child)) {
+                assignSlots(child);
+
+                if (parentCounts.get(child) > 1 && isWorthSharing(child)) {
+                    definitions.add(rebuildChildren(child));
+                    slotIndexes.put(child, definitions.size() - 1);
+                }
+            }
+    }
+
+    /**
+     * Odtwarza drzewo, zastępując węzły posiadające slot odwołaniem do slotu
+     */
+    private Expression rebuild(Expression expression) throws ParserException {
+        Integer slot = slotIndexes.get(expression);
+        if (slot != null)
+            return new Expression.Slot(slot);
+
+        return rebuildChildren(expression);
+    }
+
+    private Expression rebuildChildren(Expression expression) throws ParserException {
+        if (expression instanceof Expression.Negation)
+            return new Expression.Negation(rebuild(((Expression.Negation) expression).operand));
+
+        if (expression instanceof Expression.Function) {
+            Expression.Function function = (Expression.Function) expression;
+            return new Expression.Function(function.name, rebuild(function.argument));
+        }
+
+        if (expression instanceof Expression.Operation) {
+            Expression.Operation operation = (Expression.Operation) expression;
+            return new Expression.Operation(operation.operator, rebuild(operation.left), rebuild(operation.right));
+        }
+
+        return expression;
+    }
+
+    /**
+     * Stałych i zmiennej nie opłaca się przenosić do slotu, ich odczyt jest tak samo tani
+     */
+    private static boolean isWorthSharing(Expression expression) {
+        return !(expression instanceof Expression.Constant) && !(expression instanceof Expression.Variable);
+    }
+
+    private static Expression[] getChildren(Expression expression) {
+        if (expression instanceof Expression.Negation)
+            return new Expression[]{((Expression.Negation) expression).operand};
+
+        if (expression instanceof Expression.Function)
+            return new Expression[]{((Expression.Function) expression).argument};
+
+        if (expression instanceof Expression.Operation)
+            return new Expression[]{((Expression.Operation) expression).left, ((Expression.Operation) expression).right};
+
+        return new Expression[0];
+    }
+}
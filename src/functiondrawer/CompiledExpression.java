@@ -0,0 +1,61 @@
+package functiondrawer;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Szablon evaluatora dla backendu METHOD_HANDLE. Klasa nie jest używana bezpośrednio: MethodHandleEvaluator definiuje
+ * jej kod bajtowy dla każdego wyrażenia od nowa jako klasę ukrytą, z łańcuchem MethodHandle wyrażenia jako danymi klasy.
+ * Uchwyt trafia do pola static final, które JIT traktuje jako stałą, więc wywołanie invokeExact zostaje zastąpione
+ * całym łańcuchem, a pętla po bloku punktów jest kompilowana razem z arytmetyką formuły.
+ * Klasa ukryta nie jest silnie związana z klasą definiującą, więc zostaje usunięta razem z evaluatorem.
+ */
+final class CompiledExpression implements Evaluator {
+    private final static MethodHandle HANDLE = getClassData();
+    private final Expression expression;
+
+    /**
+     * @param expression - drzewo wyrażenia, używane do obliczeń na przedziałach
+     */
+    CompiledExpression(Expression expression) {
+        this.expression = expression;
+    }
+
+    private static MethodHandle getClassData() {
+        try {
+            return MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        return invoke(x);
+    }
+
+    @Override
+    public void applyAsDouble(double[] xs, double[] ys, int from, int to) {
+        for (int i = from; i < to; i++)
+            ys[i] = invoke(xs[i]);
+    }
+
+    @Override
+    public Interval applyAsInterval(double from, double to) {
+        return expression.applyAsInterval(from, to);
+    }
+
+    private static double invoke(double x) {
+        try {
+            return (double) HANDLE.invokeExact(x);
+
+        } catch (RuntimeException | Error e) {
+            throw e;
+
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+}
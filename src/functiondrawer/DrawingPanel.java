@@ -2,34 +2,69 @@ package functiondrawer;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Line2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Klasa obsługuję JPanel umieszczony w aplikacji. Jej zadaniem jest nayrsowanie układu współrzędnych i wykresu funkcji
  * na podstawie obliczonych przez parser punktów. Dodatkowo umożliwia ona wyświetlanie informacji tekstowych w przypadku
  * wystąpienia komunikatów dla uzytkownika.
- * Na podstawie listy obliczonych punktów, zostaje automatycznie wyznaczony zakres i skala ryskunku który zostanie wykonany.
- * Kroki układu współrzędnych dobierane są tak by ich ilośc nie przekraczała dziesięciu.
+ * Na panelu może zostać narysowanych kilka funkcji, każda w innym kolorze z palety FUNCTION_COLORS, z legendą
+ * w lewym górnym rogu. Zakres i skala są wspólne dla wszystkich funkcji.
+ * Na podstawie serii obliczonych punktów, zostaje automatycznie wyznaczony zakres i skala ryskunku który zostanie wykonany.
+ * Zakres można następnie zmieniać kółkiem myszy (przybliżenie) i przeciąganiem (przesunięcie). W trakcie zmiany
+ * wykres jest natychmiast rysowany z posiadanych punktów, a po chwili bez ruchu słuchacz widoku otrzymuje nowy zakres,
+ * aby punkty widocznego fragmentu mogły zostać obliczone ponownie w tle.
+ * Kroki układu współrzędnych dobierane są tak by ich ilośc nie przekraczała dziesięciu na każdą stronę osi.
+ * Przed rysowaniem seria jest redukowana do kilku punktów na kolumnę pikseli, więc koszt rysowania zależy od szerokości panelu.
+ * Wykres jest rysowany do zapamiętanego obrazu tylko po zmianie danych, widoku lub rozmiaru panelu, a kolejne odświeżenia
+ * panelu jedynie kopiują ten obraz. Krzywa jest przekazywana do Java2D jako łamana we współrzędnych ekranu,
+ * w tablicach używanych przy kolejnych rysowaniach, a linie osi i znaczników korzystają z jednego obiektu linii,
+ * więc rysowanie nie tworzy nowych obiektów dla kolejnych odcinków.
  */
 
 class DrawingPanel extends JPanel {
     private static final int MARKER_HEIGHT = 3;
     private static final int MARKER_NUMBER_MARGIN = 5;
+    private static final int MAX_MARKERS = 20;
     private static final float DRAWING_SIDE_MARGIN = 0.2f;
     private static final int MESSAGE_FONT_SIZE = 20;
+    private static final double ZOOM_STEP = 1.1;
+    private static final int RESAMPLE_DELAY = 200;
+    private static final int MAX_PIXEL = 1 << 20;
+    private static final double MAX_LIMIT = 1e300;
     private static final Color COORDINATE_COLOR = Color.BLACK;
-    private static final Color FUNCTION_COLOR = Color.RED;
+    private static final int LEGEND_MARGIN = 10;
+    private static final Color[] FUNCTION_COLORS = {Color.RED, Color.BLUE, new Color(0, 128, 0), new Color(230, 120, 0),
+            Color.MAGENTA, new Color(0, 128, 128), Color.DARK_GRAY, new Color(139, 69, 19)};
     private static final Color ERROR_COLOR = Color.RED;
     private static final Color MESSAGE_COLOR = Color.GREEN;
     private Graphics2D graphic;
     private int width, height;
     private String errorMessage = "", message = "";
-    private List<Point.Double> pointsList = new ArrayList<>();
-    private float xScale, yScale;
-    private int biggestX, biggestY;
+    private List<SampleSeries> samples = Collections.emptyList();
+    private String[] functions = new String[0];
+    private Viewport viewport = new Viewport(-1, 1, -1, 1);
+    private ViewportListener viewportListener;
+    private final Timer resampleTimer;
+    private Point dragPoint;
+    private BufferedImage plotImage;
+    private int[] xPoints = new int[0], yPoints = new int[0];
+    private long drawnPoints;
+    private final Line2D.Double line = new Line2D.Double();
+
+    DrawingPanel() {
+        resampleTimer = new Timer(RESAMPLE_DELAY, event -> onViewportSettled());
+        resampleTimer.setRepeats(false);
+        setMouseListeners();
+    }
 
     /**
      * Ustawia wiadomość błędu - kolor czerwony
@@ -54,31 +89,57 @@ class DrawingPanel extends JPanel {
     }
 
     /**
-     * Ustawia punkty na podstawie których ma zostać narysowany wykres
-     * @param pointsList - lista puntków
+     * Ustawia punkty na podstawie których mają zostać narysowane wykresy i dopasowuje do nich wspólny widok
+     * @param samples - serie puntków kolejnych funkcji
+     * @param functions - wzory kolejnych funkcji, wyświetlane w legendzie
      */
-    void setFunctionPoints(List<Point.Double> pointsList) {
-        this.pointsList = pointsList;
+    void setFunctionPoints(List<SampleSeries> samples, String[] functions) {
+        this.samples = samples;
+        this.functions = functions;
+        setLimits();
+        this.plotImage = null;
         repaint();
     }
 
     /**
-     * @return aktualnie narysowaną grafikę w postaci zabuforowanego obrazu
+     * Zastępuje punkty wykresów punktami obliczonymi ponownie dla widocznego fragmentu, bez zmiany widoku.
+     * Legenda jest zastępowana razem z punktami, aby zawsze opisywała narysowane serie
+     * @param samples - serie puntków kolejnych funkcji
+     * @param functions - wzory kolejnych funkcji, wyświetlane w legendzie
      */
-    BufferedImage getBufferedGraphic() {
-        BufferedImage bufferedImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        Graphics g = bufferedImage.getGraphics();
-        paint(g);
+    void updateFunctionPoints(List<SampleSeries> samples, String[] functions) {
+        this.samples = samples;
+        this.functions = functions;
+        this.plotImage = null;
+        repaint();
+    }
 
-        return bufferedImage;
+    /**
+     * Ustawia słuchacza, który otrzymuje widok po zakończeniu przybliżania lub przesuwania
+     * @param viewportListener - słuchacz zmian widoku
+     */
+    void setViewportListener(ViewportListener viewportListener) {
+        this.viewportListener = viewportListener;
+    }
+
+    /**
+     * @return aktualnie narysowaną grafikę w postaci zabuforowanego obrazu, ten sam obraz jest używany do odświeżania panelu
+     */
+    BufferedImage getBufferedGraphic() {
+        return getPlotImage();
     }
 
     /**
      * Główna metoda obiektu, zostaje wywołana każdorazowo gdy JPanel ma zostać narysowany,
-     * steruje ona błędami i rysowaniem funkcji
+     * steruje ona błędami i kopiuje zapamiętany obraz wykresu. Czas odświeżenia trafia do metryk,
+     * a odświeżenie jest zapisywane jako zdarzenie JFR z ilością narysowanych punktów.
      */
     @Override
     public void paintComponent(Graphics g) {
+        FlightRecorderEvents.PaintEvent event = new FlightRecorderEvents.PaintEvent();
+        event.begin();
+        long start = System.nanoTime();
+        BufferedImage previousImage = plotImage;
         super.paintComponent(g);
         graphic = (Graphics2D) g;
 
@@ -90,13 +151,138 @@ class DrawingPanel extends JPanel {
         else if (message.length() > 0)
             showMessage();
 
-        else if (pointsList.size() > 0) {
-            setCoordinateCenter();
-            setLimits();
-            setScale();
+        else if (hasPoints())
+            g.drawImage(getPlotImage(), 0, 0, null);
+
+        Metrics.get().recordPaint(System.nanoTime() - start);
+        boolean redrawn = plotImage != previousImage;
+        event.end(width, height, redrawn, redrawn ? drawnPoints : 0);
+    }
+
+    /**
+     * Przeciąganie myszą przesuwa widok, a kółko myszy przybliża go lub oddala wokół kursora
+     */
+    private void setMouseListeners() {
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragPoint = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragPoint != null) {
+                    changeViewport(viewport.pan(e.getX() - dragPoint.x, e.getY() - dragPoint.y, getWidth(), getHeight()));
+                    dragPoint = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragPoint = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double factor = Math.pow(ZOOM_STEP, e.getPreciseWheelRotation());
+                changeViewport(viewport.zoom(factor, e.getX(), e.getY(), getWidth(), getHeight()));
+            }
+        };
+
+        addMouseListener(mouseAdapter);
+        addMouseMotionListener(mouseAdapter);
+        addMouseWheelListener(mouseAdapter);
+    }
+
+    /**
+     * Rysuje posiadane punkty w nowym widoku i odkłada ponowne obliczenie do zakończenia zmian
+     */
+    private void changeViewport(Viewport viewport) {
+        if (!hasPoints() || getWidth() == 0 || getHeight() == 0)
+            return;
+
+        this.viewport = viewport;
+        this.plotImage = null;
+        repaint();
+        resampleTimer.restart();
+    }
+
+    private void onViewportSettled() {
+        if (viewportListener != null)
+            viewportListener.onViewportChange(viewport);
+    }
+
+    /**
+     * Zwraca obraz wykresu, rysując go ponownie tylko wtedy, gdy zmieniły się punkty, widok lub rozmiar panelu.
+     * Obraz ma typ TYPE_INT_RGB, więc może zostać zapisany również jako JPG. Ma co najmniej 1 piksel w każdym wymiarze,
+     * więc jest porównywany z rozmiarem panelu ograniczonym w ten sam sposób, aby pusty panel nie był rysowany za każdym razem.
+     */
+    private BufferedImage getPlotImage() {
+        measureScreen();
+        int imageWidth = Math.max(width, 1), imageHeight = Math.max(height, 1);
+
+        if (plotImage == null || plotImage.getWidth() != imageWidth || plotImage.getHeight() != imageHeight) {
+            plotImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D previousGraphic = graphic;
+            graphic = plotImage.createGraphics();
+            drawPlot();
+            graphic.dispose();
+            graphic = previousGraphic;
+        }
+
+        return plotImage;
+    }
+
+    /**
+     * Rysuje tło, układ współrzędnych i wykres funkcji
+     */
+    private void drawPlot() {
+        graphic.setPaint(getBackground());
+        graphic.fillRect(0, 0, width, height);
+        graphic.setFont(getFont());
+
+        Object desktopHints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        if (desktopHints instanceof Map)
+            graphic.addRenderingHints((Map<?, ?>) desktopHints);
+
+        drawnPoints = 0;
+        if (hasPoints()) {
             drawCoordinateLines();
             drawMarkers();
-            drawFunction();
+            for (int i = 0; i < samples.size(); i++)
+                drawFunction(samples.get(i), getFunctionColor(i));
+            drawLegend();
+        }
+    }
+
+    /**
+     * @return - true jeśli choć jedna funkcja ma punkty do narysowania
+     */
+    private boolean hasPoints() {
+        for (SampleSeries series : samples)
+            if (!series.isEmpty())
+                return true;
+        return false;
+    }
+
+    /**
+     * Zwraca kolor funkcji o podanym numerze, powtarzając paletę, gdy funkcji jest więcej niż kolorów
+     */
+    private static Color getFunctionColor(int index) {
+        return FUNCTION_COLORS[index % FUNCTION_COLORS.length];
+    }
+
+    /**
+     * Wypisuje wzory funkcji w ich kolorach, jeśli na wykresie jest więcej niż jedna funkcja
+     */
+    private void drawLegend() {
+        if (samples.size() < 2)
+            return;
+
+        int lineHeight = graphic.getFontMetrics().getHeight();
+        for (int i = 0; i < samples.size() && i < functions.length; i++) {
+            graphic.setPaint(getFunctionColor(i));
+            graphic.drawString("y = " + functions[i], LEGEND_MARGIN, LEGEND_MARGIN + lineHeight * (i + 1));
         }
     }
 
@@ -129,21 +315,20 @@ class DrawingPanel extends JPanel {
     }
 
     /**
-     * Ustala środek JPanel'u
-     */
-    private void setCoordinateCenter() {
-        graphic.translate(width / 2, height / 2);
-    }
-
-    /**
-     * Na podstawie listy przesłanych punktów ustala maksymalną istniejącą wartość X i Y
+     * Na podstawie serii przesłanych punktów wszystkich funkcji ustala maksymalną istniejącą wartość X i Y i dopasowuje do nich widok
+     * Wartość Y jest brana z zakresu wartości wyznaczonego arytmetyką przedziałową, jeśli seria go posiada, dzięki czemu
+     * pojedyncze punkty przy biegunach (np. 1/x blisko zera) nie spłaszczają wykresu. Zakres sięgający granicy
+     * EvaluationPolicy.MAX_VALUE nie mówi nic o widocznych punktach, więc wtedy używane są wartości punktów.
+     * Obliczenia są wykonywane na typie double, a wartości są ograniczane do MAX_LIMIT, aby widok pozostał skończony
      */
     private void setLimits() {
-        biggestX = (int) Math.ceil(getBiggestAbsX());
-        biggestY = (int) Math.ceil(getBiggestAbsY());
+        double biggestX = Math.ceil(Math.min(getBiggestAbsX(), MAX_LIMIT));
+        double biggestY = Math.ceil(Math.min(getBiggestAbsY(), MAX_LIMIT));
 
         biggestX += getDivider(biggestX);
         biggestY += getDivider(biggestY);
+
+        viewport = Viewport.fit(biggestX, biggestY, DRAWING_SIDE_MARGIN);
     }
 
     /**
@@ -151,9 +336,10 @@ class DrawingPanel extends JPanel {
      */
     private double getBiggestAbsX() {
         double result = 0;
-        for (Point.Double point : pointsList)
-            if (Math.abs(point.getX()) > result)
-                result = Math.abs(point.getX());
+        for (SampleSeries series : samples)
+            for (int i = 0; i < series.size(); i++)
+                if (Math.abs(series.getX(i)) > result)
+                    result = Math.abs(series.getX(i));
         return result;
     }
 
@@ -162,110 +348,216 @@ class DrawingPanel extends JPanel {
      */
     private double getBiggestAbsY() {
         double result = 0;
-        for (Point.Double point : pointsList)
-            if (Math.abs(point.getY()) > result)
-                result = Math.abs(point.getY());
+        for (SampleSeries series : samples) {
+            if (series.getValueRange() != null && series.getValueRange().getMagnitude() < EvaluationPolicy.MAX_VALUE) {
+                result = Math.max(result, series.getValueRange().getMagnitude());
+                continue;
+            }
+
+            for (int i = 0; i < series.size(); i++)
+                if (Math.abs(series.getY(i)) > result)
+                    result = Math.abs(series.getY(i));
+        }
         return result;
     }
 
     /**
-     * Na podstawie maksymalnych wartości ustala jaką skalę przyjmie oś X i Y
+     * Zwraca położenie osi X w pikselach, czyli y = 0 lub krawędź panelu, jeśli zero nie jest widoczne
+     */
+    private int getXAxisPosition() {
+        return (int) Math.max(0, Math.min(height - 1, viewport.toPixelY(0, height)));
+    }
+
+    /**
+     * Zwraca położenie osi Y w pikselach, czyli x = 0 lub krawędź panelu, jeśli zero nie jest widoczne
      */
-    private void setScale() {
-        xScale = (width / ((float) biggestX * (2 + DRAWING_SIDE_MARGIN)));
-        yScale = (height / ((float) biggestY * (2 + DRAWING_SIDE_MARGIN)));
+    private int getYAxisPosition() {
+        return (int) Math.max(0, Math.min(width - 1, viewport.toPixelX(0, width)));
     }
 
     /**
      * Rysuje linie układu współrzędnych
      */
     private void drawCoordinateLines() {
+        int xAxis = getXAxisPosition(), yAxis = getYAxisPosition();
+
         graphic.setPaint(COORDINATE_COLOR);
-        graphic.draw(new Line2D.Double(0, 0, biggestX * xScale, 0));
-        graphic.draw(new Line2D.Double(0, 0, -biggestX * xScale, 0));
-        graphic.draw(new Line2D.Double(0, 0, 0, biggestY * yScale));
-        graphic.draw(new Line2D.Double(0, 0, 0, -biggestY * yScale));
+        drawLine(0, xAxis, width, xAxis);
+        drawLine(yAxis, 0, yAxis, height);
     }
 
     /**
      * Rysuje oznaczenia układu współrzędnych w odpowiednich odległościach i wyliczonych wartościach
      */
     private void drawMarkers() {
-        draw0Marker();
+        int xAxis = getXAxisPosition(), yAxis = getYAxisPosition();
+        draw0Marker(xAxis, yAxis);
 
-        int xStep = getDivider(biggestX);
-        for (int i = 0; i <= (biggestX); i += xStep)
-            drawXMarker(i, i * xScale);
+        double xStep = getMarkerStep(viewport.getXMax() - viewport.getXMin());
+        for (long i = (long) Math.ceil(viewport.getXMin() / xStep); i * xStep <= viewport.getXMax(); i++)
+            drawXMarker(i, xStep, (float) viewport.toPixelX(i * xStep, width), xAxis);
 
-        int yStep = getDivider(biggestY);
-        for (int i = 0; i <= (biggestY); i += yStep)
-            drawYMarker(i, i * yScale);
+        double yStep = getMarkerStep(viewport.getYMax() - viewport.getYMin());
+        for (long i = (long) Math.ceil(viewport.getYMin() / yStep); i * yStep <= viewport.getYMax(); i++)
+            drawYMarker(i, yStep, (float) viewport.toPixelY(i * yStep, height), yAxis);
     }
 
     /**
-     * Rysuje zero wykresu
+     * Rysuje zero wykresu, jeśli początek układu jest widoczny
      */
-    private void draw0Marker() {
-        graphic.drawString("0", 3, -3);
+    private void draw0Marker(int xAxis, int yAxis) {
+        if (viewport.getXMin() <= 0 && viewport.getXMax() >= 0 && viewport.getYMin() <= 0 && viewport.getYMax() >= 0)
+            graphic.drawString("0", yAxis + 3, xAxis - 3);
     }
 
     /**
      * Zwraca dzielnik określonej wartości gdy jest większa niż 10
      * @param var - wartość dla której ma zostać zwrócny dzielnik
      */
-    private int getDivider(int var) {
-        if (var / 10 > 0)
-            return (int) Math.ceil(((double) var) / 10);
+    private double getDivider(double var) {
+        if (var >= 10)
+            return Math.ceil(var / 10);
         else
             return 1;
     }
 
+    /**
+     * Zwraca odległość między znacznikami: 1, 2 lub 5 razy potęga dziesięciu, tak by na osi
+     * było nie więcej niż MAX_MARKERS znaczników
+     * @param range - długość widocznego zakresu osi
+     */
+    private static double getMarkerStep(double range) {
+        double step = range / MAX_MARKERS;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(step)));
+        double normalized = step / magnitude;
+
+        if (normalized <= 1)
+            return magnitude;
+        if (normalized <= 2)
+            return 2 * magnitude;
+        if (normalized <= 5)
+            return 5 * magnitude;
+        return 10 * magnitude;
+    }
+
+    /**
+     * Zwraca opis znacznika z taką ilością miejsc po przecinku, jaka wynika z odległości między znacznikami
+     * @param index - numer znacznika
+     * @param step - odległość między znacznikami
+     */
+    private static String formatMarker(long index, double step) {
+        int decimals = (int) Math.max(0, -Math.floor(Math.log10(step)));
+        return String.format(Locale.ROOT, "%." + decimals + "f", index * step);
+    }
+
     /**
      * Rysuje znacznik X
-     * @param value - wartość markera
+     * Opis znajduje się pod osią, a nad nią, gdy oś leży przy dolnej krawędzi panelu. Opis, który nie zmieściłby się
+     * w szerokości panelu, zostaje pominięty.
+     * @param index - numer znacznika
+     * @param step - odległość między znacznikami
      * @param xPosition - lokalizacji markera na osi X
+     * @param xAxis - położenie osi X
      */
-    private void drawXMarker(int value, float xPosition) {
-        if (value != 0) {
-            String valueString = String.valueOf(value);
+    private void drawXMarker(long index, double step, float xPosition, int xAxis) {
+        if (index != 0) {
+            String valueString = formatMarker(index, step);
             int textWidth = graphic.getFontMetrics().stringWidth(valueString);
-            int markerPosition = (MARKER_HEIGHT + MARKER_NUMBER_MARGIN) * 2;
-            graphic.draw(new Line2D.Double(xPosition, -MARKER_HEIGHT, xPosition, MARKER_HEIGHT));
-            graphic.drawString(valueString, xPosition - textWidth / 2, markerPosition);
-            graphic.draw(new Line2D.Double(-xPosition, -MARKER_HEIGHT, -xPosition, MARKER_HEIGHT));
-            graphic.drawString("-" + valueString, -xPosition - textWidth / 2, markerPosition);
+            int markerPosition = xAxis + (MARKER_HEIGHT + MARKER_NUMBER_MARGIN) * 2;
+            if (markerPosition > height)
+                markerPosition = xAxis - MARKER_HEIGHT - MARKER_NUMBER_MARGIN;
+
+            drawLine(xPosition, xAxis - MARKER_HEIGHT, xPosition, xAxis + MARKER_HEIGHT);
+            if (xPosition - textWidth / 2 >= 0 && xPosition + textWidth / 2 <= width)
+                graphic.drawString(valueString, xPosition - textWidth / 2, markerPosition);
         }
     }
 
     /**
      * Rysuje znacznik Y
-     * @param value - wartość jaka zostanie wpisana na markerze
+     * Opis znajduje się na prawo od osi, a na lewo od niej, gdy oś leży przy prawej krawędzi panelu.
+     * @param index - numer znacznika
+     * @param step - odległość między znacznikami
      * @param yPosition - pozycja na osi Y
+     * @param yAxis - położenie osi Y
      */
-    private void drawYMarker(int value, float yPosition) {
-        if (value != 0) {
-            String valueString = String.valueOf(value);
+    private void drawYMarker(long index, double step, float yPosition, int yAxis) {
+        if (index != 0) {
+            String valueString = formatMarker(index, step);
             int textHeight = graphic.getFontMetrics().getAscent() - graphic.getFontMetrics().getDescent();
-            int markerPosition = (MARKER_HEIGHT + MARKER_NUMBER_MARGIN);
-            graphic.draw(new Line2D.Double(-MARKER_HEIGHT, yPosition, MARKER_HEIGHT, yPosition));
-            graphic.drawString("-" + valueString, markerPosition, yPosition + textHeight / 2);
-            graphic.draw(new Line2D.Double(-MARKER_HEIGHT, -yPosition, MARKER_HEIGHT, -yPosition));
-            graphic.drawString(valueString, markerPosition, -yPosition + textHeight / 2);
+            int textWidth = graphic.getFontMetrics().stringWidth(valueString);
+            int markerPosition = yAxis + MARKER_HEIGHT + MARKER_NUMBER_MARGIN;
+            if (markerPosition + textWidth > width)
+                markerPosition = yAxis - MARKER_HEIGHT - MARKER_NUMBER_MARGIN - textWidth;
+
+            drawLine(yAxis - MARKER_HEIGHT, yPosition, yAxis + MARKER_HEIGHT, yPosition);
+            graphic.drawString(valueString, markerPosition, yPosition + textHeight / 2);
         }
     }
 
+    /**
+     * Rysuje odcinek, używając za każdym razem tego samego obiektu linii
+     */
+    private void drawLine(double x1, double y1, double x2, double y2) {
+        line.setLine(x1, y1, x2, y2);
+        graphic.draw(line);
+    }
+
     /**
      * łączy linią podane punkty, tworząc jednocześnie wykres funkcji
+     * Punkty są zamieniane na współrzędne pikseli i rysowane jako łamana jednym wywołaniem drawPolyline.
+     * Punkty o nieokreślonej wartości przerywają łamanę, tak jak wcześniej odcinki z takimi punktami nie były rysowane.
+     * @param samples - seria punktów funkcji
+     * @param color - kolor funkcji
+     */
+    private void drawFunction(SampleSeries samples, Color color) {
+        double xScale = viewport.getXScale(width);
+        SampleSeries visible = PixelDecimator.reduce(samples, -viewport.getXMin() * xScale, xScale, width);
+        ensurePointCapacity(visible.size());
+        drawnPoints += visible.size();
+        graphic.setPaint(color);
+
+        int count = 0;
+        for (int i = 0; i < visible.size(); i++) {
+            double y = viewport.toPixelY(visible.getY(i), height);
+
+            if (Double.isNaN(y) || Double.isInfinite(y)) {
+                drawPolyline(count);
+                count = 0;
+
+            } else {
+                xPoints[count] = toPixel(viewport.toPixelX(visible.getX(i), width));
+                yPoints[count] = toPixel(y);
+                count++;
+            }
+        }
+        drawPolyline(count);
+    }
+
+    private void drawPolyline(int count) {
+        if (count > 1)
+            graphic.drawPolyline(xPoints, yPoints, count);
+    }
+
+    /**
+     * Zaokrągla współrzędną do piksela, tak jak Java2D zaokrągla końce pojedynczych odcinków.
+     * Punkty daleko poza panelem są przybliżane do granicy MAX_PIXEL, aby nie przekroczyć zakresu int.
      */
-    private void drawFunction() {
-        graphic.setPaint(FUNCTION_COLOR);
-        Point.Double previousPoint = null;
-        for (Point.Double point : pointsList) {
-            if (previousPoint != null)
-                graphic.draw(new Line2D.Double(previousPoint.getX() * xScale, -previousPoint.getY() * yScale,
-                        point.getX() * xScale, -point.getY() * yScale));
+    private static int toPixel(double position) {
+        return (int) Math.floor(Math.max(-MAX_PIXEL, Math.min(MAX_PIXEL, position)) + 0.5);
+    }
 
-            previousPoint = point;
+    /**
+     * Powiększa tablice współrzędnych łamanej, jeśli są za małe, w przeciwnym razie używa poprzednich
+     */
+    private void ensurePointCapacity(int capacity) {
+        if (xPoints.length < capacity) {
+            xPoints = new int[capacity];
+            yPoints = new int[capacity];
         }
     }
+
+    interface ViewportListener {
+        void onViewportChange(Viewport viewport);
+    }
 }
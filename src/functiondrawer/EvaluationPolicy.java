@@ -0,0 +1,242 @@
+package functiondrawer;
+
+import java.util.Objects;
+
+/**
+ * Sposób obsługi punktów, w których funkcja nie daje poprawnej wartości.
+ * Evaluatory liczą zgodnie z IEEE 754, więc dzielenie przez zero daje nieskończoność, a pierwiastek z liczby ujemnej NaN,
+ * zamiast przerywać całe obliczenie. Dopiero wynik jest sprawdzany jednym porównaniem |y| < MAX_VALUE, a dla nielicznych
+ * punktów, które go nie spełniają, drzewo wyrażenia jest przechodzone ponownie, aby ustalić przyczynę:
+ * dzielenie przez zero, pierwiastek z liczby ujemnej lub przekroczenie zakresu.
+ * Dla każdej przyczyny można wybrać osobne działanie:
+ * GAP - punkt zostaje zastąpiony NaN i przerywa wykres
+ * CLAMP - wartość skończona zostaje ograniczona do przedziału od -MAX_VALUE do MAX_VALUE, a nieskończoność i wartość
+ * nieokreślona przerywają wykres tak jak przy GAP, aby nie rysować w miejscu luki w dziedzinie fałszywej linii
+ * ABORT - obliczenie zostaje przerwane wyjątkiem parsera, tak jak przed wprowadzeniem tej klasy
+ * Domyślnie (DEFAULT) każda przyczyna przerywa obliczenie, więc zbyt duże wartości są zgłaszane błędem, a nie znikają
+ * z wykresu. NaN o innej przyczynie, np. logarytm liczby ujemnej, zawsze przerywa wykres.
+ */
+final class EvaluationPolicy {
+    /**
+     * Największa dopuszczalna wartość bezwzględna, ta sama, od której pierwotny parser zgłaszał błąd MAX_REACHED
+     */
+    final static double MAX_VALUE = 1e7;
+    /**
+     * Przerywa obliczenie przy każdej przyczynie, tak jak pierwotny parser
+     */
+    final static EvaluationPolicy DEFAULT = new EvaluationPolicy(Action.ABORT, Action.ABORT, Action.ABORT);
+    /**
+     * Zastępuje każdą niepoprawną wartość przerwą w wykresie, bez zgłaszania błędów
+     */
+    final static EvaluationPolicy GAPS = new EvaluationPolicy(Action.GAP, Action.GAP, Action.GAP);
+    private final Action onZeroDivision, onSqrtProblem, onMaxReached;
+
+    /**
+     * @param onZeroDivision - działanie dla dzielenia przez zero
+     * @param onSqrtProblem - działanie dla pierwiastka z liczby ujemnej
+     * @param onMaxReached - działanie dla wartości przekraczającej zakres
+     */
+    EvaluationPolicy(Action onZeroDivision, Action onSqrtProblem, Action onMaxReached) {
+        this.onZeroDivision = onZeroDivision;
+        this.onSqrtProblem = onSqrtProblem;
+        this.onMaxReached = onMaxReached;
+    }
+
+    /**
+     * Zwraca evaluator, który poprawia wyniki podanego evaluatora według tej polityki
+     * @param expression - drzewo wyrażenia, z którego powstał evaluator, używane do ustalenia przyczyny błędu
+     * @param evaluator - evaluator wybranego backendu
+     */
+    Evaluator apply(Expression expression, Evaluator evaluator) {
+        return new CheckedEvaluator(expression, evaluator);
+    }
+
+    /**
+     * Obsługuje wartość spoza dopuszczalnego zakresu lub nieokreśloną
+     * @param expression - drzewo wyrażenia
+     * @param x - wartość zmiennej x
+     * @param y - wartość obliczona przez evaluator
+     * @return - wartość, która trafi do serii punktów
+     */
+    private double resolve(Expression expression, double x, double y) throws ParserException {
+        if (onZeroDivision == Action.GAP && onSqrtProblem == Action.GAP && onMaxReached == Action.GAP)
+            return Double.NaN;
+
+        ParserException cause = findCause(expression, x);
+        Action action;
+        if (cause != null)
+            action = cause.getErrorCode() == ParserException.ZERO_DIVISION ? onZeroDivision : onSqrtProblem;
+        else if (Double.isNaN(y))
+            return y;
+        else {
+            action = onMaxReached;
+            cause = new ParserException(ParserException.MAX_REACHED, "");
+        }
+
+        switch (action) {
+            case GAP:
+                return Double.NaN;
+
+            case CLAMP:
+                return Double.isFinite(y) ? Math.max(-MAX_VALUE, Math.min(MAX_VALUE, y)) : Double.NaN;
+
+            default:
+                throw cause;
+        }
+    }
+
+    /**
+     * Poprawia ograniczenie wartości tak, aby zawierało jedynie wartości, jakie może zwrócić evaluator tej polityki.
+     * Wartości spoza zakresu są odcinane, chyba że któraś przyczyna jest ograniczana (CLAMP), a wtedy są ograniczane
+     * do zakresu. Nieskończoność i wartość nieokreślona stają się przerwą, więc nie dodają do przedziału nic.
+     * @param bounds - ograniczenie obliczone arytmetyką przedziałową lub null
+     * @return - poprawione ograniczenie, przedział pusty, jeśli żadna wartość nie trafi do serii punktów, lub null
+     */
+    private Interval resolve(Interval bounds) {
+        if (bounds == null)
+            return null;
+
+        boolean clampValues = onZeroDivision == Action.CLAMP || onSqrtProblem == Action.CLAMP || onMaxReached == Action.CLAMP;
+        return clampValues ? bounds.clamp(-MAX_VALUE, MAX_VALUE) : bounds.intersect(-MAX_VALUE, MAX_VALUE);
+    }
+
+    /**
+     * Ustala przyczynę niepoprawnej wartości, szukając pierwszego węzła, który dzieli przez zero lub
+     * pierwiastkuje liczbę ujemną. Węzły są sprawdzane w kolejności zapisu wzoru: argumenty przed działaniem, a lewy
+     * argument przed prawym, więc winny jest najbardziej wewnętrzny, a potem najbardziej lewy zawodzący węzeł.
+     * Wspólne podwyrażenia są sprawdzane w miejscu pierwszego użycia, więc wynik nie zależy od ich eliminacji.
+     * @param expression - drzewo wyrażenia
+     * @param x - wartość zmiennej x
+     * @return - wyjątek ZERO_DIVISION lub SQRT_PROBLEM albo null, jeśli żaden węzeł nie zawiódł
+     */
+    static ParserException findCause(Expression expression, double x) {
+        try {
+            if (expression instanceof Expression.Shared) {
+                Expression.Shared shared = (Expression.Shared) expression;
+                double[] slots = new double[shared.definitions.length];
+                for (int i = 0; i < slots.length; i++)
+                    slots[i] = shared.definitions[i].evaluate(x, slots);
+
+                check(shared.body, x, shared.definitions, slots, new boolean[slots.length]);
+            } else
+                check(expression, x, null, null, null);
+            return null;
+
+        } catch (ParserException e) {
+            return e;
+        }
+    }
+
+    /**
+     * @param definitions - definicje wspólnych podwyrażeń
+     * @param slots - wartości wspólnych podwyrażeń
+     * @param checked - wspólne podwyrażenia, które zostały już sprawdzone
+     */
+    private static void check(Expression expression, double x, Expression[] definitions, double[] slots, boolean[] checked)
+            throws ParserException {
+        if (expression instanceof Expression.Slot) {
+            int index = ((Expression.Slot) expression).index;
+            if (!checked[index]) {
+                checked[index] = true;
+                check(definitions[index], x, definitions, slots, checked);
+            }
+
+        } else if (expression instanceof Expression.Negation)
+            check(((Expression.Negation) expression).operand, x, definitions, slots, checked);
+
+        else if (expression instanceof Expression.Function) {
+            Expression.Function function = (Expression.Function) expression;
+            check(function.argument, x, definitions, slots, checked);
+
+            double argument = function.argument.evaluate(x, slots);
+            if (function.type == Expression.Function.SQRT && argument < 0)
+                throw new ParserException(ParserException.SQRT_PROBLEM, String.valueOf(argument));
+
+        } else if (expression instanceof Expression.Operation) {
+            Expression.Operation operation = (Expression.Operation) expression;
+            check(operation.left, x, definitions, slots, checked);
+            check(operation.right, x, definitions, slots, checked);
+
+            if (operation.operator == '/' && operation.right.evaluate(x, slots) == 0)
+                throw new ParserException(ParserException.ZERO_DIVISION, "");
+        }
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof EvaluationPolicy))
+            return false;
+
+        EvaluationPolicy policy = (EvaluationPolicy) object;
+        return onZeroDivision == policy.onZeroDivision && onSqrtProblem == policy.onSqrtProblem
+                && onMaxReached == policy.onMaxReached;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(onZeroDivision, onSqrtProblem, onMaxReached);
+    }
+
+    @Override
+    public String toString() {
+        return onZeroDivision + "/" + onSqrtProblem + "/" + onMaxReached;
+    }
+
+    /**
+     * Działanie podejmowane dla niepoprawnej wartości
+     */
+    enum Action {
+        GAP, CLAMP, ABORT;
+
+        /**
+         * Zwraca działanie o podanej nazwie lub domyślne, jeśli nazwa jest pusta bądź nieznana
+         * @param name - nazwa działania
+         * @param defaultAction - działanie domyślne
+         */
+        static Action fromName(String name, Action defaultAction) {
+            if (name != null)
+                for (Action action : values())
+                    if (action.name().equalsIgnoreCase(name.trim()))
+                        return action;
+
+            return defaultAction;
+        }
+    }
+
+    /**
+     * Evaluator sprawdzający wyniki innego evaluatora
+     */
+    private final class CheckedEvaluator implements Evaluator {
+        private final Expression expression;
+        private final Evaluator evaluator;
+
+        CheckedEvaluator(Expression expression, Evaluator evaluator) {
+            this.expression = expression;
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public double applyAsDouble(double x) throws ParserException {
+            double y = evaluator.applyAsDouble(x);
+            return Math.abs(y) < MAX_VALUE ? y : resolve(expression, x, y);
+        }
+
+        /**
+         * Ograniczenie wartości po zastosowaniu polityki, aby odcinki, na których wszystkie wartości przekraczają zakres,
+         * były traktowane jak odcinki bez wartości, a nie jak ukryte piki
+         */
+        @Override
+        public Interval applyAsInterval(double from, double to) {
+            return resolve(evaluator.applyAsInterval(from, to));
+        }
+
+        @Override
+        public void applyAsDouble(double[] xs, double[] ys, int from, int to) throws ParserException {
+            evaluator.applyAsDouble(xs, ys, from, to);
+
+            for (int i = from; i < to; i++)
+                if (!(Math.abs(ys[i]) < MAX_VALUE))
+                    ys[i] = resolve(expression, xs[i], ys[i]);
+        }
+    }
+}
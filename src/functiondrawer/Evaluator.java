@@ -0,0 +1,88 @@
+package functiondrawer;
+
+/**
+ * Obliczalna postać skompilowanego wyrażenia.
+ * Parser zwraca drzewo wyrażenia, które zostaje zamienione na evaluator przez wybrany backend.
+ */
+interface Evaluator {
+
+    /**
+     * Oblicza wartość funkcji dla podanego parametru
+     * @param x - wartość zmiennej x
+     * @return - wartość funkcji
+     */
+    double applyAsDouble(double x) throws ParserException;
+
+    /**
+     * Oblicza wartości funkcji dla fragmentu tablicy, domyślnie punkt po punkcie
+     * @param xs - wartości x
+     * @param ys - tablica, do której zostaną zapisane wartości funkcji
+     * @param from - pierwszy obliczany indeks (włącznie)
+     * @param to - ostatni obliczany indeks (wyłącznie)
+     */
+    default void applyAsDouble(double[] xs, double[] ys, int from, int to) throws ParserException {
+        for (int i = from; i < to; i++)
+            ys[i] = applyAsDouble(xs[i]);
+    }
+
+    /**
+     * Oblicza ograniczenie wartości funkcji dla całego przedziału x (arytmetyka przedziałowa)
+     * @param from - początek przedziału
+     * @param to - koniec przedziału
+     * @return - przedział zawierający wszystkie wartości funkcji lub null, jeśli evaluator nie obsługuje
+     * obliczeń na przedziałach
+     */
+    default Interval applyAsInterval(double from, double to) {
+        return null;
+    }
+
+    /**
+     * Sposób w jaki drzewo wyrażenia zostaje zamienione na evaluator
+     * INTERPRETER - drzewo jest obliczane rekurencyjnie, węzeł po węźle
+     * METHOD_HANDLE - drzewo zostaje złożone w jeden łańcuch MethodHandle, będący stałą osobnej klasy ukrytej, dzięki czemu JIT
+     * kompiluje go jako ciągłą arytmetykę
+     * BATCH - każdy węzeł drzewa jest liczony od razu dla całego bloku punktów w pętlach podatnych na wektoryzację
+     */
+    enum Backend {
+        INTERPRETER {
+            @Override
+            Evaluator create(Expression expression) {
+                return expression;
+            }
+        },
+
+        METHOD_HANDLE {
+            @Override
+            Evaluator create(Expression expression) {
+                return MethodHandleEvaluator.create(expression);
+            }
+        },
+
+        BATCH {
+            @Override
+            Evaluator create(Expression expression) {
+                return new BatchEvaluator(expression);
+            }
+        };
+
+        /**
+         * Tworzy evaluator dla skompilowanego wyrażenia
+         * @param expression - drzewo wyrażenia
+         */
+        abstract Evaluator create(Expression expression);
+
+        /**
+         * Zwraca backend o podanej nazwie lub domyślny, jeśli nazwa jest pusta bądź nieznana
+         * @param name - nazwa backendu
+         * @param defaultBackend - backend domyślny
+         */
+        static Backend fromName(String name, Backend defaultBackend) {
+            if (name != null)
+                for (Backend backend : values())
+                    if (backend.name().equalsIgnoreCase(name.trim()))
+                        return backend;
+
+            return defaultBackend;
+        }
+    }
+}
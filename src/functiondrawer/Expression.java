@@ -0,0 +1,498 @@
+package functiondrawer;
+
+import java.util.Arrays;
+
+/**
+ * Skompilowane wyrażenie matematyczne w postaci niezmiennego drzewa.
+ * Drzewo zostaje zbudowane przez parser tylko raz, a następnie jest obliczane dla kolejnych wartości x
+ * bez ponownego przetwarzania tekstu wzoru. Węzły są niezmienne, więc jedno drzewo może być współdzielone między wątkami.
+ * Samo drzewo jest również evaluatorem interpretującym, używanym przez backend INTERPRETER.
+ * Obliczenie przebiega zgodnie z IEEE 754, np. dzielenie przez zero daje nieskończoność, a niepoprawne wartości
+ * obsługuje dopiero EvaluationPolicy.
+ * Drzewo można też obliczyć dla całego przedziału wartości x (arytmetyka przedziałowa), otrzymując ograniczenie
+ * wszystkich wartości funkcji w tym przedziale.
+ * Węzły porównywane są strukturalnie, co pozwala wyszukać w drzewie powtarzające się poddrzewa.
+ */
+abstract class Expression implements Evaluator {
+
+    /**
+     * Oblicza wartość wyrażenia dla podanego parametru
+     * @param x - wartość zmiennej x
+     * @return - wartość wyrażenia
+     */
+    double evaluate(double x) {
+        return evaluate(x, null);
+    }
+
+    /**
+     * Oblicza wartość wyrażenia dla podanego parametru i wcześniej obliczonych wspólnych podwyrażeń
+     * @param x - wartość zmiennej x
+     * @param slots - wartości wspólnych podwyrażeń, odczytywane przez węzły Slot
+     * @return - wartość wyrażenia
+     */
+    abstract double evaluate(double x, double[] slots);
+
+    /**
+     * Oblicza ograniczenie wartości wyrażenia dla przedziału wartości parametru
+     * @param x - przedział wartości zmiennej x
+     * @return - przedział zawierający wszystkie wartości wyrażenia
+     */
+    Interval evaluate(Interval x) {
+        return evaluate(x, null);
+    }
+
+    /**
+     * Oblicza ograniczenie wartości wyrażenia dla przedziału wartości parametru i wcześniej obliczonych ograniczeń
+     * wspólnych podwyrażeń
+     * @param x - przedział wartości zmiennej x
+     * @param slots - ograniczenia wspólnych podwyrażeń, odczytywane przez węzły Slot
+     * @return - przedział zawierający wszystkie wartości wyrażenia
+     */
+    abstract Interval evaluate(Interval x, Interval[] slots);
+
+    @Override
+    public final double applyAsDouble(double x) {
+        return evaluate(x);
+    }
+
+    @Override
+    public final Interval applyAsInterval(double from, double to) {
+        return evaluate(new Interval(from, to));
+    }
+
+    /**
+     * Stała liczbowa
+     */
+    static final class Constant extends Expression {
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            return value;
+        }
+
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            return new Interval(value, value);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Constant &&
+                    Double.doubleToLongBits(((Constant) object).value) == Double.doubleToLongBits(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Zmienna x
+     */
+    static final class Variable extends Expression {
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            return x;
+        }
+
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            return x;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Variable;
+        }
+
+        @Override
+        public int hashCode() {
+            return 'x';
+        }
+
+        @Override
+        public String toString() {
+            return "x";
+        }
+    }
+
+    /**
+     * Negacja wyrażenia
+     */
+    static final class Negation extends Expression {
+        final Expression operand;
+
+        Negation(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            return -operand.evaluate(x, slots);
+        }
+
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            return operand.evaluate(x, slots).negate();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Negation && ((Negation) object).operand.equals(operand);
+        }
+
+        @Override
+        public int hashCode() {
+            return -operand.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "(-" + operand + ")";
+        }
+    }
+
+    /**
+     * Działanie dwuargumentowe: dodawanie, odejmowanie, mnożenie, dzielenie lub potęgowanie
+     */
+    static final class Operation extends Expression {
+        final char operator;
+        final Expression left, right;
+        /**
+         * Porównanie poddrzew przechodzi całe drzewo, więc jest wykonywane raz, a nie przy każdym obliczeniu przedziału
+         */
+        private final boolean square;
+
+        Operation(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.square = operator == '*' && left.equals(right);
+        }
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            double leftValue = left.evaluate(x, slots);
+            double rightValue = right.evaluate(x, slots);
+
+            switch (operator) {
+                case '+':
+                    return leftValue + rightValue;
+
+                case '-':
+                    return leftValue - rightValue;
+
+                case '*':
+                    return leftValue * rightValue;
+
+                case '/':
+                    return leftValue / rightValue;
+
+                default:
+                    return Math.pow(leftValue, rightValue);
+            }
+        }
+
+        /**
+         * Iloczyn poddrzewa przez samo siebie, np. po zamianie x^2 na x * x, jest liczony jako kwadrat przedziału,
+         * ponieważ obie strony przyjmują w każdym punkcie tę samą wartość
+         */
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            Interval leftValue = left.evaluate(x, slots);
+            if (square)
+                return leftValue.square();
+
+            Interval rightValue = right.evaluate(x, slots);
+            switch (operator) {
+                case '+':
+                    return leftValue.add(rightValue);
+
+                case '-':
+                    return leftValue.subtract(rightValue);
+
+                case '*':
+                    return leftValue.multiply(rightValue);
+
+                case '/':
+                    return leftValue.divide(rightValue);
+
+                default:
+                    return leftValue.power(rightValue);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + operator + " " + right + ")";
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Operation))
+                return false;
+
+            Operation operation = (Operation) object;
+            return operation.operator == operator && operation.left.equals(left) && operation.right.equals(right);
+        }
+
+        @Override
+        public int hashCode() {
+            return (operator * 31 + left.hashCode()) * 31 + right.hashCode();
+        }
+    }
+
+    /**
+     * Funkcja matematyczna jednego argumentu. Nazwa funkcji zostaje rozpoznana w momencie kompilacji,
+     * dzięki czemu obliczenie nie porównuje już napisów.
+     */
+    static final class Function extends Expression {
+        final static int SQRT = 0;
+        final static int SINE = 1;
+        final static int COSINE = 2;
+        final static int TANGENT = 3;
+        final static int LOGARITHM = 4;
+        /**
+         * Nazwy funkcji, indeks odpowiada typowi funkcji
+         */
+        final static String[] NAMES = {Strings.sqrtFunction, Strings.sineFunction, Strings.cosineFunction,
+                Strings.tangentFunction, Strings.logarithmFunction};
+        final int type;
+        final String name;
+        final Expression argument;
+
+        /**
+         * @param name - nazwa funkcji
+         * @param argument - wyrażenie będące argumentem funkcji
+         */
+        Function(String name, Expression argument) throws ParserException {
+            this.type = getType(name);
+            this.name = name;
+            this.argument = argument;
+        }
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            return calculate(type, argument.evaluate(x, slots));
+        }
+
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            return calculate(type, argument.evaluate(x, slots));
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + argument + ")";
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Function && ((Function) object).type == type && ((Function) object).argument.equals(argument);
+        }
+
+        @Override
+        public int hashCode() {
+            return type * 31 + argument.hashCode();
+        }
+
+        /**
+         * Oblicza funkcję dla podanego parametru na podstawie jej typu
+         * @param type - typ funkcji
+         * @param x - wartość dla której będzie obliczana funkcja
+         */
+        static double calculate(int type, double x) {
+            switch (type) {
+                case SQRT:
+                    return Math.sqrt(x);
+
+                case SINE:
+                    return Math.sin(x);
+
+                case COSINE:
+                    return Math.cos(x);
+
+                case TANGENT:
+                    return Math.tan(x);
+
+                default:
+                    return Math.log(x);
+            }
+        }
+
+        /**
+         * Oblicza ograniczenie funkcji dla przedziału argumentu na podstawie jej typu
+         * @param type - typ funkcji
+         * @param x - przedział argumentu
+         */
+        static Interval calculate(int type, Interval x) {
+            switch (type) {
+                case SQRT:
+                    return x.sqrt();
+
+                case SINE:
+                    return x.sin();
+
+                case COSINE:
+                    return x.cos();
+
+                case TANGENT:
+                    return x.tan();
+
+                default:
+                    return x.log();
+            }
+        }
+
+        /**
+         * Zamienia nazwę funkcji na jej typ. Parser wywołuje ją przed odczytaniem argumentu, aby nieznana nazwa
+         * została zgłoszona jako nieznana funkcja, a nie jako błąd w dalszej części wzoru
+         * @param name - nazwa funkcji
+         */
+        static int getType(String name) throws ParserException {
+            switch (name) {
+                case Strings.sqrtFunction:
+                    return SQRT;
+
+                case Strings.sineFunction:
+                    return SINE;
+
+                case Strings.cosineFunction:
+                    return COSINE;
+
+                case Strings.tangentFunction:
+                    return TANGENT;
+
+                case Strings.logarithmFunction:
+                    return LOGARITHM;
+
+                default:
+                    throw new ParserException(ParserException.UNKNOWN_FUNCTION, name);
+            }
+        }
+    }
+
+    /**
+     * Odwołanie do wspólnego podwyrażenia, obliczonego wcześniej w tym samym kroku
+     */
+    static final class Slot extends Expression {
+        final int index;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            return slots[index];
+        }
+
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            return slots[index];
+        }
+
+        @Override
+        public String toString() {
+            return "$" + index;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Slot && ((Slot) object).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    /**
+     * Korzeń drzewa ze wspólnymi podwyrażeniami. Dla każdej wartości x najpierw obliczane są kolejne definicje
+     * i zapisywane do tablicy slotów, a następnie wyrażenie główne, które odczytuje je węzłami Slot.
+     * Definicja może odwoływać się tylko do slotów o mniejszym numerze.
+     */
+    static final class Shared extends Expression {
+        final Expression[] definitions;
+        final Expression body;
+        /**
+         * Sloty są przydzielane raz dla każdego wątku, ponieważ to samo wyrażenie jest obliczane równolegle
+         * przez zadania samplerów, a tablica tworzona przy każdym punkcie przekraczałaby koszt samego obliczenia
+         */
+        private final ThreadLocal<double[]> values;
+        private final ThreadLocal<Interval[]> bounds;
+
+        Shared(Expression[] definitions, Expression body) {
+            this.definitions = definitions;
+            this.body = body;
+            this.values = ThreadLocal.withInitial(() -> new double[definitions.length]);
+            this.bounds = ThreadLocal.withInitial(() -> new Interval[definitions.length]);
+        }
+
+        @Override
+        double evaluate(double x) {
+            return evaluate(x, values.get());
+        }
+
+        @Override
+        double evaluate(double x, double[] slots) {
+            for (int i = 0; i < definitions.length; i++)
+                slots[i] = definitions[i].evaluate(x, slots);
+
+            return body.evaluate(x, slots);
+        }
+
+        @Override
+        Interval evaluate(Interval x) {
+            return evaluate(x, bounds.get());
+        }
+
+        @Override
+        Interval evaluate(Interval x, Interval[] slots) {
+            for (int i = 0; i < definitions.length; i++)
+                slots[i] = definitions[i].evaluate(x, slots);
+
+            return body.evaluate(x, slots);
+        }
+
+        @Override
+        public void applyAsDouble(double[] xs, double[] ys, int from, int to) {
+            double[] slots = values.get();
+            for (int i = from; i < to; i++)
+                ys[i] = evaluate(xs[i], slots);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < definitions.length; i++)
+                builder.append(i > 0 ? ", $" : "$").append(i).append(" = ").append(definitions[i]);
+
+            return builder.append("] ").append(body).toString();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Shared && ((Shared) object).body.equals(body) &&
+                    Arrays.equals(((Shared) object).definitions, definitions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(definitions) * 31 + body.hashCode();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package functiondrawer;
+
+/**
+ * Optymalizacja drzewa wyrażenia wykonywana jednokrotnie, między parsowaniem a obliczaniem.
+ * Przechodzi drzewo od liści do korzenia i:
+ * - oblicza poddrzewa złożone wyłącznie ze stałych, o ile wynik jest skończony (np. 1/0 zostaje w drzewie,
+ *   aby EvaluationPolicy mogła rozpoznać dzielenie przez zero),
+ * - zamienia potęgi o małym naturalnym wykładniku na mnożenie,
+ * - usuwa działania neutralne (*1, /1, +0, -0, ^1),
+ * - zamienia dzielenie przez stałą na mnożenie przez jej odwrotność,
+ * - łączy stałe w ciągach mnożeń, np. (x * 2) * 3 na x * 6.
+ */
+final class ExpressionOptimizer {
+    private final static int MAX_MULTIPLIED_POWER = 8;
+
+    private ExpressionOptimizer() {
+    }
+
+    /**
+     * Zwraca zoptymalizowane drzewo obliczające te same wartości co podane
+     * @param expression - drzewo wyrażenia
+     */
+    static Expression optimize(Expression expression) throws ParserException {
+        if (expression instanceof Expression.Negation)
+            return optimizeNegation(optimize(((Expression.Negation) expression).operand));
+
+        if (expression instanceof Expression.Function) {
+            Expression.Function function = (Expression.Function) expression;
+            return optimizeFunction(new Expression.Function(function.name, optimize(function.argument)));
+        }
+
+        if (expression instanceof Expression.Operation) {
+            Expression.Operation operation = (Expression.Operation) expression;
+            return optimizeOperation(operation.operator, optimize(operation.left), optimize(operation.right));
+        }
+
+        return expression;
+    }
+
+    private static Expression optimizeNegation(Expression operand) {
+        if (operand instanceof Expression.Constant)
+            return new Expression.Constant(-((Expression.Constant) operand).value);
+
+        if (operand instanceof Expression.Negation)
+            return ((Expression.Negation) operand).operand;
+
+        return new Expression.Negation(operand);
+    }
+
+    private static Expression optimizeFunction(Expression.Function function) {
+        if (function.argument instanceof Expression.Constant)
+            return fold(function);
+
+        return function;
+    }
+
+    private static Expression optimizeOperation(char operator, Expression left, Expression right) {
+        if (left instanceof Expression.Constant && right instanceof Expression.Constant)
+            return fold(new Expression.Operation(operator, left, right));
+
+        switch (operator) {
+            case '+':
+                if (isConstant(right, 0))
+                    return left;
+                if (isConstant(left, 0))
+                    return right;
+                break;
+
+            case '-':
+                if (isConstant(right, 0))
+                    return left;
+                if (isConstant(left, 0))
+                    return optimizeNegation(right);
+                break;
+
+            case '*':
+                return optimizeMultiplication(left, right);
+
+            case '/':
+                if (isConstant(right, 1))
+                    return left;
+                if (right instanceof Expression.Constant && ((Expression.Constant) right).value != 0)
+                    return optimizeMultiplication(left, new Expression.Constant(1 / ((Expression.Constant) right).value));
+                break;
+
+            case '^':
+                return optimizePower(left, right);
+        }
+
+        return new Expression.Operation(operator, left, right);
+    }
+
+    /**
+     * Usuwa mnożenie przez jeden i łączy stałe z ciągu mnożeń w jedną
+     */
+    private static Expression optimizeMultiplication(Expression left, Expression right) {
+        if (left instanceof Expression.Constant) {
+            Expression temp = left;
+            left = right;
+            right = temp;
+        }
+
+        if (isConstant(right, 1))
+            return left;
+
+        if (right instanceof Expression.Constant && left instanceof Expression.Operation) {
+            Expression.Operation operation = (Expression.Operation) left;
+            if (operation.operator == '*' && operation.right instanceof Expression.Constant) {
+                double value = ((Expression.Constant) operation.right).value * ((Expression.Constant) right).value;
+                return optimizeMultiplication(operation.left, new Expression.Constant(value));
+            }
+        }
+
+        return new Expression.Operation('*', left, right);
+    }
+
+    /**
+     * Zamienia potęgę o małym naturalnym wykładniku na ciąg mnożeń.
+     * Podstawa zostaje powtórzona w drzewie, ale po eliminacji wspólnych podwyrażeń jest obliczana tylko raz.
+     */
+    private static Expression optimizePower(Expression base, Expression exponent) {
+        if (isConstant(exponent, 1))
+            return base;
+
+        if (isConstant(exponent, 0))
+            return new Expression.Constant(1);
+
+        if (exponent instanceof Expression.Constant) {
+            double value = ((Expression.Constant) exponent).value;
+            if (value == Math.rint(value) && value >= 2 && value <= MAX_MULTIPLIED_POWER) {
+                Expression result = base;
+                for (int i = 1; i < value; i++)
+                    result = new Expression.Operation('*', result, base);
+                return result;
+            }
+        }
+
+        return new Expression.Operation('^', base, exponent);
+    }
+
+    /**
+     * Zamienia poddrzewo złożone ze stałych na jego wartość, jeśli jest ona skończona
+     */
+    private static Expression fold(Expression expression) {
+        double value = expression.evaluate(0);
+        return Double.isNaN(value) || Double.isInfinite(value) ? expression : new Expression.Constant(value);
+    }
+
+    private static boolean isConstant(Expression expression, double value) {
+        return expression instanceof Expression.Constant && ((Expression.Constant) expression).value == value;
+    }
+}
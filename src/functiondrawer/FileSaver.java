@@ -75,19 +75,39 @@ class FileSaver {
         switch (extension) {
             case "JPG":
                 path = path + ".jpg";
-                ImageIO.write(image, "JPG", new File(path));
-                return true;
+                return writeImage(image, "JPG", new File(path));
 
             case "PNG":
                 path = path + ".png";
-                ImageIO.write(image, "PNG", new File(path));
-                return true;
+                return writeImage(image, "PNG", new File(path));
 
             default:
                 return false;
         }
     }
 
+    /**
+     * Koduje obraz w podanym formacie i zapisuje go do pliku, zapisując czas w metrykach i jako zdarzenie JFR
+     * @param image - obraz który ma zostać zapisany
+     * @param format - format obrazu obsługiwany przez ImageIO
+     * @param file - plik wynikowy
+     * @return - false jeśli format nie jest obsługiwany
+     */
+    static boolean writeImage(BufferedImage image, String format, File file) throws IOException {
+        FlightRecorderEvents.SaveImageEvent event = new FlightRecorderEvents.SaveImageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            success = ImageIO.write(image, format, file);
+            Metrics.get().recordEncode(System.nanoTime() - start);
+            return success;
+        } finally {
+            event.end(file.getPath(), format, success);
+        }
+    }
+
     /**
      * Usuwa typ pliku z wybranej lokalizacji
      * @param path - wybrana lokalziacja
@@ -0,0 +1,185 @@
+package functiondrawer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Zdarzenia JDK Flight Recorder dla kompilacji wzoru, wyznaczania punktów, rysowania panelu i zapisu obrazu.
+ * Pozwalają zestawić powolne rysowanie z aktywnością GC i wątków, np.:
+ *
+ * java -XX:StartFlightRecording=filename=functiondrawer.jfr -jar FunctionDrawer.jar
+ * jfr print --categories FunctionDrawer functiondrawer.jfr
+ *
+ * Pola zdarzenia są wypełniane dopiero po sprawdzeniu shouldCommit(), więc gdy nagrywanie jest wyłączone,
+ * nie są tworzone żadne napisy, a begin() i end() nic nie robią.
+ */
+final class FlightRecorderEvents {
+    private final static int NO_ERROR = -1;
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Zwraca kod błędu parsera lub NO_ERROR
+     */
+    private static int getErrorCode(ParserException exception) {
+        return exception != null ? exception.getErrorCode() : NO_ERROR;
+    }
+
+    /**
+     * Zwraca wynik: ok, cancelled lub error
+     */
+    private static String getOutcome(ParserException exception) {
+        if (exception == null)
+            return "ok";
+        return exception.getErrorCode() == ParserException.CANCELLED ? "cancelled" : "error";
+    }
+
+    @Name("functiondrawer.Compile")
+    @Label("Compile Expression")
+    @Description("Parsowanie, optymalizacja i kompilacja wzoru")
+    @Category("FunctionDrawer")
+    @StackTrace(false)
+    static final class CompileEvent extends Event {
+        @Label("Expression")
+        String expression;
+
+        @Label("Cached")
+        boolean cached;
+
+        @Label("Error Code")
+        int errorCode;
+
+        /**
+         * Kończy zdarzenie i zapisuje je, jeśli jest nagrywane
+         * @param expression - wzór
+         * @param cached - true jeśli wyrażenie pochodzi z pamięci podręcznej
+         * @param exception - błąd parsera lub null
+         */
+        void end(String expression, boolean cached, ParserException exception) {
+            end();
+            if (shouldCommit()) {
+                this.expression = expression;
+                this.cached = cached;
+                this.errorCode = getErrorCode(exception);
+                commit();
+            }
+        }
+    }
+
+    @Name("functiondrawer.Sample")
+    @Label("Sample Functions")
+    @Description("Wyznaczenie punktów jednej lub kilku funkcji w przedziale")
+    @Category("FunctionDrawer")
+    @StackTrace(false)
+    static final class SampleEvent extends Event {
+        @Label("Expression")
+        String expression;
+
+        @Label("Start Value")
+        double startValue;
+
+        @Label("End Value")
+        double endValue;
+
+        @Label("Sampling")
+        @Description("Krok lub nazwa próbkowania adaptacyjnego")
+        String sampling;
+
+        @Label("Sample Count")
+        long sampleCount;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Error Code")
+        int errorCode;
+
+        /**
+         * Kończy zdarzenie i zapisuje je, jeśli jest nagrywane
+         * @param equalisations - wzory funkcji
+         * @param startValue - wartość początkowa
+         * @param endValue - wartość końcowa
+         * @param sampling - krok lub obiekt próbkowania adaptacyjnego
+         * @param results - wyznaczone serie lub null, jeśli wystąpił błąd
+         * @param exception - błąd parsera lub null
+         */
+        void end(String[] equalisations, double startValue, double endValue, Object sampling, SampleSeries[] results,
+                 ParserException exception) {
+            end();
+            if (shouldCommit()) {
+                this.expression = String.join("; ", equalisations);
+                this.startValue = startValue;
+                this.endValue = endValue;
+                this.sampling = sampling instanceof AdaptiveSampler ? "adaptive" : String.valueOf(sampling);
+                this.outcome = getOutcome(exception);
+                this.errorCode = getErrorCode(exception);
+                if (results != null)
+                    for (SampleSeries result : results)
+                        sampleCount += result.size();
+                commit();
+            }
+        }
+    }
+
+    @Name("functiondrawer.Paint")
+    @Label("Paint Plot")
+    @Description("Odświeżenie panelu z wykresem")
+    @Category("FunctionDrawer")
+    @StackTrace(false)
+    static final class PaintEvent extends Event {
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Redrawn")
+        @Description("Czy wykres został narysowany ponownie, czy tylko skopiowany z zapamiętanego obrazu")
+        boolean redrawn;
+
+        @Label("Points Drawn")
+        long pointsDrawn;
+
+        void end(int width, int height, boolean redrawn, long pointsDrawn) {
+            end();
+            if (shouldCommit()) {
+                this.width = width;
+                this.height = height;
+                this.redrawn = redrawn;
+                this.pointsDrawn = pointsDrawn;
+                commit();
+            }
+        }
+    }
+
+    @Name("functiondrawer.SaveImage")
+    @Label("Save Image")
+    @Description("Zakodowanie i zapis obrazu wykresu do pliku")
+    @Category("FunctionDrawer")
+    @StackTrace(false)
+    static final class SaveImageEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Format")
+        String format;
+
+        @Label("Success")
+        boolean success;
+
+        void end(String path, String format, boolean success) {
+            end();
+            if (shouldCommit()) {
+                this.path = path;
+                this.format = format;
+                this.success = success;
+                commit();
+            }
+        }
+    }
+}
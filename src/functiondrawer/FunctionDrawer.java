@@ -1,6 +1,7 @@
 package functiondrawer;
 
 import java.awt.*;
+import java.util.List;
 
 /**
  * Klasa startowa, inicjalizuje ona obiekt parsera matematycznego stringu, obiekt widoku i obiekt prezentera,
@@ -10,9 +11,22 @@ import java.awt.*;
  */
 public class FunctionDrawer {
     private final static float PARSER_STEP = 0.01f;
+    private final static int MIN_SAMPLE_COUNT = 2000;
+    private final static Evaluator.Backend EVALUATOR_BACKEND =
+            Evaluator.Backend.fromName(System.getProperty("functiondrawer.backend"), Evaluator.Backend.INTERPRETER);
+    private final static EvaluationPolicy EVALUATION_POLICY = new EvaluationPolicy(
+            getAction("functiondrawer.onZeroDivision"), getAction("functiondrawer.onSqrt"), getAction("functiondrawer.onOverflow"));
+    private final static boolean PARALLEL_SAMPLING =
+            Boolean.parseBoolean(System.getProperty("functiondrawer.parallel", "true"));
+    private final static boolean ADAPTIVE_SAMPLING = !"fixed".equalsIgnoreCase(System.getProperty("functiondrawer.sampling"));
+    private final static double ADAPTIVE_TOLERANCE = 0.001;
+    private final static int ADAPTIVE_MAX_DEPTH = 10;
+    private final static long CACHE_SIZE_MB = Long.getLong("functiondrawer.cacheSize", 64);
     private View view;
     private PresenterInterface presenterInterface;
-    private MathParser mathParser;
+    private AdaptiveSampler adaptiveSampler;
+    private CalculationScheduler scheduler;
+    private CalculationCache cache;
     private Presenter presenter;
 
     /**
@@ -29,14 +43,22 @@ public class FunctionDrawer {
 
     /**
      * Metoda tworzy obiekty sterujące elementami programu
-     * mathParser - wykonuje parsowanie stringu matematycznego do równania
+     * scheduler - wykonuje obliczenia na wątku roboczym, nowe obliczenie anuluje poprzednie
+     * cache - przechowuje skompilowane wzory i wyznaczone serie punktów, jego rozmiar w MB można zmienić
+     * właściwością functiondrawer.cacheSize
+     * Metrics - metryki czasu obliczeń i rysowania są publikowane przez JMX (functiondrawer:type=Metrics)
+     * adaptiveSampler - wyznacza punkty adaptacyjnie, próbkowanie ze stałym krokiem PARSER_STEP można przywrócić
+     * właściwością functiondrawer.sampling=fixed
      * view - steruje widokiem i  tworzy UI
      * presenter - kontroluje view
      */
     private void startApp() {
         EventQueue.invokeLater(() -> {
             try {
-                mathParser = new MathParser();
+                scheduler = new CalculationScheduler();
+                cache = new CalculationCache(CACHE_SIZE_MB * 1024 * 1024);
+                Metrics.register(cache);
+                adaptiveSampler = createAdaptiveSampler(PARALLEL_SAMPLING);
                 view = new View();
                 presenter = new Presenter(view, this);
 
@@ -51,76 +73,161 @@ public class FunctionDrawer {
     }
 
     /**
-     * Metoda przyjmuje w parametrze wyrażenie matematyczne w postaci stringu i dwa zakresy w których ma je przetwożyć
-     * Za pomocą obiektu parsera wykonuje obliczenia i rezultat zwraca do interfejsu prezentera
-     * @param function - funkcja w postaci stringu
+     * Metoda przyjmuje w parametrze wyrażenia matematyczne w postaci stringu i dwa zakresy w których ma je przetwożyć
+     * Za pomocą obiektu parsera wykonuje obliczenia wszystkich funkcji naraz i rezultat zwraca do interfejsu prezentera
+     * Obliczenie zostaje zlecone planiście, więc kolejne wywołanie anuluje poprzednie, a jego wynik nie trafia do prezentera
+     * Wynik trafia do prezentera razem z tą samą tablicą functions, która identyfikuje zlecenie
+     * Każde zakończenie obliczenia, także nieoczekiwanym wyjątkiem, zatrzymuje zgłaszanie postępu
+     * Przedział może być ułamkowy, gdy jest to widoczny fragment przesuniętego lub przybliżonego wykresu
+     * @param functions - funkcje w postaci stringu, rysowane na jednym wykresie
      * @param startValue - wartość początkowa
      * @param endValue - wartość końcowa
      */
-    void calculateFunction(String function, int startValue, int endValue) {
-        new Thread(() -> {
-            java.util.List<Point.Double> result;
+    void calculateFunctions(String[] functions, double startValue, double endValue) {
+        long submitted = System.nanoTime();
+        scheduler.submit(cancellation -> {
+            long started = System.nanoTime();
+            Metrics.get().recordQueueWait(started - submitted);
+            boolean failed = false;
+
+            ProgressPublisher progress = createProgressPublisher(cancellation);
+            progress.start();
             try {
-                result = mathParser.parseAndGetResult(function, startValue, endValue, PARSER_STEP, onParserProgressChange());
-                if (presenterInterface != null)
-                    presenterInterface.onCalculationSuccess(result);
-
-
+                List<SampleSeries> result = calculate(createMathParser(cache, true), functions, startValue, endValue, adaptiveSampler, progress);
+                progress.finish(() -> {
+                    if (presenterInterface != null)
+                        presenterInterface.onCalculationSuccess(functions, result);
+                });
             } catch (ParserException e) {
-                onParserError(e);
+                failed = true;
+                progress.finish(() -> onCalculationError(functions, getErrorMessage(e)));
+
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                failed = true;
+                progress.finish(() -> onCalculationError(functions, Strings.unableToFinishCalculation));
             }
-        }).start();
+
+            Metrics.get().recordCalculation(System.nanoTime() - started, failed, cancellation.isCancelled());
+        });
+    }
+
+    /**
+     * Wyznacza punkty funkcji próbkowaniem adaptacyjnym lub, z właściwością functiondrawer.sampling=fixed, ze stałym krokiem
+     * @param mathParser - parser wykonujący obliczenie
+     * @param functions - funkcje w postaci stringu
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param adaptiveSampler - próbkowanie adaptacyjne
+     * @param parserProgress - aktualny postęp operacji
+     * @return - serie punktów kolejnych funkcji
+     */
+    static List<SampleSeries> calculate(MathParser mathParser, String[] functions, double startValue, double endValue,
+                                        AdaptiveSampler adaptiveSampler, MathParser.ParserProgress parserProgress) throws ParserException {
+        if (ADAPTIVE_SAMPLING)
+            return mathParser.parseAndGetResults(functions, startValue, endValue, adaptiveSampler, parserProgress);
+        else
+            return mathParser.parseAndGetResults(functions, startValue, endValue, getStep(startValue, endValue), parserProgress);
+    }
+
+    /**
+     * Tworzy próbkowanie adaptacyjne z tolerancją i głębokością podziału używanymi w aplikacji
+     * @param parallel - true jeśli odcinki mają być liczone równolegle
+     */
+    static AdaptiveSampler createAdaptiveSampler(boolean parallel) {
+        return new AdaptiveSampler(ADAPTIVE_TOLERANCE, ADAPTIVE_MAX_DEPTH, parallel);
+    }
+
+    /**
+     * Zwraca krok PARSER_STEP lub krok mniejszy, jeśli przedział jest na tyle krótki (np. po przybliżeniu wykresu),
+     * że dałby mniej niż MIN_SAMPLE_COUNT punktów
+     */
+    private static float getStep(double startValue, double endValue) {
+        return Math.min(PARSER_STEP, (float) ((endValue - startValue) / MIN_SAMPLE_COUNT));
     }
 
     /**
-     * Metoda odbiera aktualny stan parsera wyliczony w procentach i przekazuje do go prezentera
-     * @return - aktualny postęp w procentach
+     * Tworzy parser dla pojedynczego obliczenia, aby obliczenia nie współdzieliły stanu parsera, a jedynie pamięć podręczną
+     * Backend można wybrać właściwością systemową functiondrawer.backend (interpreter, method_handle lub batch),
+     * a obliczenia równoległe wyłączyć właściwością functiondrawer.parallel=false
+     * Obsługę dzielenia przez zero, pierwiastka z liczby ujemnej i zbyt dużych wartości (gap, clamp lub abort) ustawiają
+     * właściwości functiondrawer.onZeroDivision, functiondrawer.onSqrt i functiondrawer.onOverflow, domyślnie abort,
+     * czyli komunikat błędu tak jak w pierwotnej wersji
+     * @param cache - pamięć podręczna współdzielona przez parsery
+     * @param parallel - true jeśli punkty mają być obliczane równolegle
      */
-    private MathParser.ParserProgress onParserProgressChange() {
-        return percentageProgress -> {
+    static MathParser createMathParser(CalculationCache cache, boolean parallel) {
+        MathParser mathParser = new MathParser();
+        mathParser.setBackend(EVALUATOR_BACKEND);
+        mathParser.setEvaluationPolicy(EVALUATION_POLICY);
+        mathParser.setParallel(parallel && PARALLEL_SAMPLING);
+        mathParser.setCache(cache);
+        return mathParser;
+    }
+
+    private static EvaluationPolicy.Action getAction(String property) {
+        return EvaluationPolicy.Action.fromName(System.getProperty(property), EvaluationPolicy.Action.ABORT);
+    }
+
+    /**
+     * Tworzy obiekt odbierający stan parsera wyliczony w procentach i przekazujący go do prezentera w wątku Swing
+     * Parser sprawdza przez niego również, czy obliczenie nie zostało anulowane
+     * @param cancellation - stan anulowania obliczenia
+     * @return - publikator postępu obliczenia
+     */
+    private ProgressPublisher createProgressPublisher(CalculationScheduler.Cancellation cancellation) {
+        return new ProgressPublisher(cancellation, percentageProgress -> {
             if (presenterInterface != null)
                 presenterInterface.onCalculationProgressChange(percentageProgress);
-        };
+        });
     }
 
 
     /**
-     * Metoda zostaje wywołana gdy parser natrafi na jakiś wyjątek. Jej zadaniem jej przesłanie odpowiedniego błędu do
+     * Metoda zostaje wywołana gdy obliczenie natrafi na jakiś wyjątek. Jej zadaniem jej przesłanie odpowiedniego błędu do
      * prezentera
-     * @param exception - błąd jaki wysątpił
+     * @param functions - funkcje, dla których zlecono obliczenie
+     * @param message - komunikat błędu
      */
-    private void onParserError(ParserException exception) {
+    private void onCalculationError(String[] functions, String message) {
         if (presenterInterface != null)
-            switch (exception.getErrorCode()) {
-                case ParserException.UNKNOWN_CHAR:
-                    presenterInterface.onCalculationError(Strings.unexpectedChar + " " + exception.getInfo());
-                    break;
+            presenterInterface.onCalculationError(functions, message);
+    }
 
-                case ParserException.UNKNOWN_FUNCTION:
-                    presenterInterface.onCalculationError(Strings.unknownFunction + " " + exception.getInfo());
-                    break;
+    /**
+     * Zamienia błąd parsera na komunikat dla użytkownika
+     * @param exception - błąd jaki wysątpił
+     */
+    static String getErrorMessage(ParserException exception) {
+        switch (exception.getErrorCode()) {
+            case ParserException.UNKNOWN_CHAR:
+                return Strings.unexpectedChar + " " + exception.getInfo();
 
-                case ParserException.SQRT_PROBLEM:
-                    presenterInterface.onCalculationError(Strings.unableToCalculateSqrt + " " + exception.getInfo());
-                    break;
+            case ParserException.UNKNOWN_FUNCTION:
+                return Strings.unknownFunction + " " + exception.getInfo();
 
-                case ParserException.ZERO_DIVISION:
-                    presenterInterface.onCalculationError(Strings.zeroDivisionWarning);
-                    break;
+            case ParserException.SQRT_PROBLEM:
+                return Strings.unableToCalculateSqrt + " " + exception.getInfo();
 
-                case ParserException.MAX_REACHED:
-                    presenterInterface.onCalculationError(Strings.toHighValue);
-                    break;
+            case ParserException.ZERO_DIVISION:
+                return Strings.zeroDivisionWarning;
 
-                default:
-                    presenterInterface.onCalculationError(Strings.unableToFinishCalculation);
-            }
+            case ParserException.MAX_REACHED:
+                return Strings.toHighValue;
+
+            default:
+                return Strings.unableToFinishCalculation;
+        }
     }
 
+    /**
+     * Wynik i błąd obliczenia są przekazywane razem z tablicą funkcji, dla której obliczenie zostało zlecone,
+     * aby prezenter mógł rozpoznać wynik nieaktualnego zlecenia
+     */
     interface PresenterInterface {
-        void onCalculationSuccess(java.util.List<Point.Double> result);
+        void onCalculationSuccess(String[] functions, List<SampleSeries> result);
 
-        void onCalculationError(String message);
+        void onCalculationError(String[] functions, String message);
 
         void onCalculationProgressChange(int progress);
     }
@@ -0,0 +1,311 @@
+package functiondrawer;
+
+/**
+ * Przedział wartości używany przez arytmetykę przedziałową.
+ * Obliczenie wyrażenia na przedziale x daje przedział zawierający wszystkie skończone wartości, jakie evaluator
+ * może zwrócić dla x z tego przedziału, oraz informację, czy w części przedziału wynik może być nieokreślony
+ * (NaN lub nieskończoność). Przedział pusty oznacza, że funkcja nie jest określona w żadnym punkcie.
+ * Granice są zaokrąglane na zewnątrz: dodawanie, odejmowanie, mnożenie, dzielenie i pierwiastek są zaokrąglane
+ * poprawnie i monotonicznie, a wyniki funkcji bibliotecznych Math, obarczone błędem do 1 ulp, są poszerzane o 1 ulp.
+ * Obiekt jest niezmienny.
+ */
+final class Interval {
+    final static Interval EMPTY = new Interval(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, true);
+    final static Interval ENTIRE = new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
+    private final static double TWO_PI = 2 * Math.PI;
+    private final static double MAX_PERIODIC_ARGUMENT = 1e6;
+    private final static double PERIOD_TOLERANCE = 1e-9;
+    private final double min, max;
+    private final boolean undefined;
+
+    /**
+     * @param min - dolna granica
+     * @param max - górna granica
+     */
+    Interval(double min, double max) {
+        this(min, max, false);
+    }
+
+    /**
+     * Nieskończona granica oznacza, że wartości mogą przekroczyć zakres double, więc taki przedział
+     * zawsze jest oznaczony jako być może nieokreślony
+     * @param min - dolna granica
+     * @param max - górna granica
+     * @param undefined - true jeśli wartość może być nieokreślona w części przedziału
+     */
+    private Interval(double min, double max, boolean undefined) {
+        this.min = min;
+        this.max = max;
+        this.undefined = undefined || Double.isInfinite(min) || Double.isInfinite(max);
+    }
+
+    /**
+     * Tworzy przedział, zamieniając granice NaN (np. 0 * nieskończoność) na przedział nieograniczony
+     */
+    private static Interval of(double min, double max, boolean undefined) {
+        if (Double.isNaN(min) || Double.isNaN(max))
+            return ENTIRE;
+        return new Interval(min, max, undefined);
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    /**
+     * @return - true jeśli funkcja nie jest określona w żadnym punkcie przedziału
+     */
+    boolean isEmpty() {
+        return min > max;
+    }
+
+    /**
+     * @return - true jeśli w części przedziału wartość może być nieokreślona
+     */
+    boolean isUndefined() {
+        return undefined;
+    }
+
+    /**
+     * @return - true jeśli przedział nie jest pusty i ma skończone granice
+     */
+    boolean isBounded() {
+        return !isEmpty() && !Double.isInfinite(min) && !Double.isInfinite(max);
+    }
+
+    /**
+     * @return - największa wartość bezwzględna w przedziale
+     */
+    double getMagnitude() {
+        return Math.max(Math.abs(min), Math.abs(max));
+    }
+
+    /**
+     * Zwraca najmniejszy przedział zawierający oba przedziały
+     */
+    Interval union(Interval other) {
+        if (isEmpty())
+            return other;
+        if (other.isEmpty())
+            return this;
+
+        return new Interval(Math.min(min, other.min), Math.max(max, other.max), undefined || other.undefined);
+    }
+
+    /**
+     * Zwraca część przedziału leżącą między podanymi granicami lub przedział pusty, jeśli żadna wartość w nich nie leży.
+     * Odcięte wartości nie zostaną zwrócone przez evaluator, więc wynik jest wtedy oznaczony jako być może nieokreślony
+     * @param low - dolna granica
+     * @param high - górna granica
+     */
+    Interval intersect(double low, double high) {
+        if (isEmpty() || max < low || min > high)
+            return EMPTY;
+        if (min >= low && max <= high)
+            return this;
+        return new Interval(Math.max(min, low), Math.min(max, high), true);
+    }
+
+    /**
+     * Ogranicza wartości przedziału do podanych granic, tak jak ograniczane są pojedyncze wartości.
+     * Ograniczane są tylko wartości skończone, a nieskończoność staje się przerwą, więc przedział nieograniczony
+     * zostaje oznaczony jako być może nieokreślony
+     * @param low - dolna granica
+     * @param high - górna granica
+     */
+    Interval clamp(double low, double high) {
+        if (isEmpty() || (min >= low && max <= high))
+            return this;
+        return new Interval(Math.min(Math.max(min, low), high), Math.max(Math.min(max, high), low), undefined || !isBounded());
+    }
+
+    Interval negate() {
+        return new Interval(-max, -min, undefined);
+    }
+
+    Interval add(Interval other) {
+        if (isEmpty() || other.isEmpty())
+            return EMPTY;
+        return of(min + other.min, max + other.max, undefined || other.undefined);
+    }
+
+    Interval subtract(Interval other) {
+        if (isEmpty() || other.isEmpty())
+            return EMPTY;
+        return of(min - other.max, max - other.min, undefined || other.undefined);
+    }
+
+    Interval multiply(Interval other) {
+        if (isEmpty() || other.isEmpty())
+            return EMPTY;
+
+        double a = multiply(min, other.min), b = multiply(min, other.max), c = multiply(max, other.min), d = multiply(max, other.max);
+        return of(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)), undefined || other.undefined);
+    }
+
+    /**
+     * Mnożenie granic, w którym zero razy nieskończoność daje zero, ponieważ nieskończona granica oznacza
+     * jedynie dowolnie duże skończone wartości
+     */
+    private static double multiply(double a, double b) {
+        return a == 0 || b == 0 ? 0 : a * b;
+    }
+
+    /**
+     * Kwadrat przedziału, węższy niż mnożenie przedziału przez siebie, gdy przedział zawiera zero
+     */
+    Interval square() {
+        if (isEmpty())
+            return EMPTY;
+        if (min >= 0)
+            return of(min * min, max * max, undefined);
+        if (max <= 0)
+            return of(max * max, min * min, undefined);
+        return of(0, Math.max(min * min, max * max), undefined);
+    }
+
+    Interval divide(Interval divisor) {
+        if (divisor.undefined)
+            return ENTIRE;
+        if (isEmpty())
+            return EMPTY;
+
+        double c = divisor.min, d = divisor.max;
+        if (c > 0 || d < 0) {
+            double a1 = min / c, a2 = min / d, b1 = max / c, b2 = max / d;
+            return of(Math.min(Math.min(a1, a2), Math.min(b1, b2)), Math.max(Math.max(a1, a2), Math.max(b1, b2)), undefined);
+        }
+
+        if (c == 0 && d == 0)
+            return EMPTY;
+
+        if (c == 0) {
+            if (min >= 0)
+                return of(min / d, Double.POSITIVE_INFINITY, true);
+            if (max <= 0)
+                return of(Double.NEGATIVE_INFINITY, max / d, true);
+        } else if (d == 0) {
+            if (min >= 0)
+                return of(Double.NEGATIVE_INFINITY, min / c, true);
+            if (max <= 0)
+                return of(max / c, Double.POSITIVE_INFINITY, true);
+        }
+
+        return ENTIRE;
+    }
+
+    /**
+     * Potęgowanie zgodne z Math.pow. Dla wykładnika całkowitego podstawa może być dowolna, w pozostałych przypadkach
+     * wynik jest ograniczony tylko dla nieujemnej podstawy, bo potęga liczby ujemnej jest wtedy nieokreślona
+     */
+    Interval power(Interval exponent) {
+        if (undefined || exponent.undefined)
+            return ENTIRE;
+
+        if (exponent.min == exponent.max && exponent.min == Math.rint(exponent.min))
+            return power(exponent.min);
+
+        if (min < 0)
+            return ENTIRE;
+
+        double a = Math.pow(min, exponent.min), b = Math.pow(min, exponent.max),
+                c = Math.pow(max, exponent.min), d = Math.pow(max, exponent.max);
+        return widen(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)), false);
+    }
+
+    private Interval power(double exponent) {
+        if (exponent == 0)
+            return new Interval(1, 1);
+
+        double a = Math.pow(min, exponent), b = Math.pow(max, exponent);
+        if (exponent < 0 && min <= 0 && max >= 0)
+            return ENTIRE;
+
+        boolean even = Math.abs(exponent % 2) == 0;
+        if (even && min < 0 && max > 0)
+            return widen(0, Math.max(a, b), false);
+
+        return widen(Math.min(a, b), Math.max(a, b), false);
+    }
+
+    Interval sqrt() {
+        if (isEmpty() || max < 0)
+            return EMPTY;
+        if (min < 0)
+            return of(0, Math.sqrt(max), true);
+        return of(Math.sqrt(min), Math.sqrt(max), undefined);
+    }
+
+    Interval log() {
+        if (isEmpty() || max <= 0)
+            return EMPTY;
+        if (min <= 0)
+            return widen(Double.NEGATIVE_INFINITY, Math.log(max), true);
+        return widen(Math.log(min), Math.log(max), undefined);
+    }
+
+    Interval sin() {
+        return periodic(0);
+    }
+
+    Interval cos() {
+        return periodic(Math.PI / 2);
+    }
+
+    /**
+     * Sinus przesuniętego argumentu, sin(x + shift), ograniczony wartościami na końcach przedziału,
+     * chyba że przedział zawiera maksimum lub minimum funkcji
+     */
+    private Interval periodic(double shift) {
+        if (isEmpty())
+            return EMPTY;
+        if (max - min >= TWO_PI || Math.abs(min) > MAX_PERIODIC_ARGUMENT || Math.abs(max) > MAX_PERIODIC_ARGUMENT)
+            return new Interval(-1, 1, undefined);
+
+        double a = shift == 0 ? Math.sin(min) : Math.cos(min), b = shift == 0 ? Math.sin(max) : Math.cos(max);
+        double low = Math.min(a, b), high = Math.max(a, b);
+        if (containsPoint(Math.PI / 2 - shift, TWO_PI))
+            high = 1;
+        if (containsPoint(-Math.PI / 2 - shift, TWO_PI))
+            low = -1;
+
+        return new Interval(Math.max(-1, Math.nextDown(low)), Math.min(1, Math.nextUp(high)), undefined);
+    }
+
+    Interval tan() {
+        if (isEmpty())
+            return EMPTY;
+        if (max - min >= Math.PI || Math.abs(min) > MAX_PERIODIC_ARGUMENT || Math.abs(max) > MAX_PERIODIC_ARGUMENT
+                || containsPoint(Math.PI / 2, Math.PI))
+            return ENTIRE;
+
+        return widen(Math.tan(min), Math.tan(max), undefined);
+    }
+
+    /**
+     * Sprawdza, czy przedział zawiera punkt offset + k * period dla całkowitego k.
+     * Przedział jest przy tym nieco poszerzany, aby błąd zaokrąglenia mógł jedynie poluzować ograniczenie
+     */
+    private boolean containsPoint(double offset, double period) {
+        double first = Math.ceil((min - offset) / period - PERIOD_TOLERANCE);
+        return first <= Math.floor((max - offset) / period + PERIOD_TOLERANCE);
+    }
+
+    /**
+     * Tworzy przedział poszerzony o 1 ulp z każdej strony
+     */
+    private static Interval widen(double min, double max, boolean undefined) {
+        return of(Math.nextDown(min), Math.nextUp(max), undefined);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty())
+            return "[]";
+        return "[" + min + ", " + max + "]" + (undefined ? "?" : "");
+    }
+}
@@ -0,0 +1,101 @@
+package functiondrawer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram czasów w nanosekundach o przedziałach rosnących wykładniczo.
+ * Każda potęga dwójki jest podzielona na SUB_BUCKETS równych przedziałów, więc percentyl jest wyznaczany z błędem
+ * względnym nie większym niż 1 / SUB_BUCKETS, a cały histogram zajmuje stałą ilość pamięci.
+ * Zapis jest bezblokadowy i może odbywać się jednocześnie z wielu wątków.
+ */
+final class LatencyHistogram {
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+    /**
+     * Zapisuje pojedynczy pomiar
+     * @param nanos - zmierzony czas w nanosekundach
+     */
+    void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        buckets.incrementAndGet(getBucket(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Zwraca numer przedziału: potęgę dwójki i kolejne SUB_BUCKET_BITS bitów wartości
+     */
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Zwraca górną granicę przedziału o podanym numerze
+     */
+    private static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Zwraca wartość, poniżej której leży podany ułamek pomiarów
+     * @param quantile - ułamek od 0 do 1, np. 0.99 dla p99
+     * @return - czas w nanosekundach lub 0, jeśli nie ma pomiarów
+     */
+    long getPercentile(double quantile) {
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(quantile * total), seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, rank))
+                return Math.min(getUpperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getSum() {
+        return sum.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++)
+            buckets.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return - ilość pomiarów, średnia, p50, p90, p99 i maksimum w milisekundach
+     */
+    LatencySnapshot getSnapshot() {
+        long total = count.get();
+        return new LatencySnapshot(total, total > 0 ? sum.get() / 1e6 / total : 0, getPercentile(0.5) / 1e6,
+                getPercentile(0.9) / 1e6, getPercentile(0.99) / 1e6, max.get() / 1e6);
+    }
+}
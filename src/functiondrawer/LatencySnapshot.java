@@ -0,0 +1,51 @@
+package functiondrawer;
+
+import java.util.Locale;
+
+/**
+ * Podsumowanie histogramu czasów w milisekundach.
+ * Klasa i jej metody są publiczne, ponieważ JMX zamienia ją na CompositeData widoczne np. w JConsole.
+ */
+public final class LatencySnapshot {
+    private final long count;
+    private final double meanMillis, p50Millis, p90Millis, p99Millis, maxMillis;
+
+    LatencySnapshot(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "n=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f ms",
+                count, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+    }
+}
@@ -1,58 +1,645 @@
 package functiondrawer;
 
-import java.awt.*;
-import java.awt.geom.Point2D;
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Klasa obsługuje algorytm rekurencyjny, którego zadaniem jest przekształcenie wpisanego wzoru matematycznego na obliczalną funkcję.
- * Poprzez zmianę parametru o zdeklarowany krok, wykonuje serię obliczeń i zwraca listę puntków należących do funkcji.
+ * Wzór zostaje skompilowany jednokrotnie do drzewa wyrażenia, które następnie jest obliczane dla kolejnych wartości parametru.
+ * Poprzez zmianę parametru o zdeklarowany krok, wykonuje serię obliczeń i zwraca serię puntków należących do funkcji.
  * Algorym rekurencyjny jest dość prostym algorytmem i opiera się na ponownym wywołuwaniu odpowiednich metod aż do zakończenia wyrażenia.
  * Po poprawnym przetworzeniu określonej częśći równania zostaje ona wycięta i przetwarzanie biegnie dalej.
+ * Kompilacja wzoru i każde wyznaczanie punktów są zapisywane jako zdarzenia JFR (FlightRecorderEvents).
  */
 class MathParser {
-    private int actualPosition = -1, actualChar, progress = 0, stepCount = 0;
+    private final static int BLOCK_SIZE = 4096;
+    private final static int CHUNK_SIZE = 1 << 20;
+    private final static int REDUCED_COLUMNS = 4096;
+    private final static int MAX_REDUCED_SAMPLES = (REDUCED_COLUMNS + 2) * 5 * 2;
+    private final static int RANGE_INTERVALS = 1024;
+    private final static int MAX_IN_MEMORY_SAMPLES = Integer.getInteger("functiondrawer.maxSamples", 1 << 24);
+    private final static double MAX_SPLICED_RANGE_RATIO = 1.01;
+    private final static double GRID_TOLERANCE = 1e-9;
+    private final static boolean DEBUG = Boolean.getBoolean("functiondrawer.debug");
+    private int actualPosition = -1, actualChar, progress = 0;
+    private long stepCount = 0;
     private String equalisation;
     private ParserProgress parserProgress;
+    private Evaluator.Backend backend = Evaluator.Backend.INTERPRETER;
+    private EvaluationPolicy evaluationPolicy = EvaluationPolicy.DEFAULT;
+    private boolean parallel = false, optimization = true;
+    private CalculationCache cache;
 
+    /**
+     * Ustawia backend, który zamienia skompilowane wyrażenie na evaluator
+     * @param backend - wybrany backend
+     */
+    void setBackend(Evaluator.Backend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Ustawia sposób obsługi dzielenia przez zero, pierwiastka z liczby ujemnej i wartości przekraczających zakres
+     * @param evaluationPolicy - polityka obsługi niepoprawnych wartości
+     */
+    void setEvaluationPolicy(EvaluationPolicy evaluationPolicy) {
+        this.evaluationPolicy = evaluationPolicy;
+    }
+
+    /**
+     * Włącza optymalizację drzewa wyrażenia po parsowaniu
+     * @param optimization - true jeśli drzewo ma zostać zoptymalizowane
+     */
+    void setOptimization(boolean optimization) {
+        this.optimization = optimization;
+    }
+
+    /**
+     * Włącza równoległe obliczanie punktów funkcji na puli ForkJoinPool
+     * @param parallel - true jeśli przedział ma być dzielony na fragmenty liczone równolegle
+     */
+    void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Ustawia pamięć podręczną skompilowanych wyrażeń i wyznaczonych serii punktów.
+     * Pamięć podręczna może być współdzielona tylko przez parsery o tych samych ustawieniach optymalizacji.
+     * @param cache - pamięć podręczna lub null, jeśli wszystko ma być liczone od nowa
+     */
+    void setCache(CalculationCache cache) {
+        this.cache = cache;
+    }
 
     /**
      * Główna metoda obiektu, wylicza ilość kroków jakie będzie musiała podjąć by wyliczyć wszystkie punkty funkcji.
      * Na ich podstawie zwraca aktualy progress.
-     * Poprawia równanie matematyczne.
-     * Dla kolejnych wartości generuje działanie i wyzwala je w parserze.
-     * Zwraca listę punktów funkcji w danym przedziale.
+     * Poprawia i kompiluje równanie matematyczne, a następnie oblicza skompilowane wyrażenie dla kolejnych wartości.
+     * Kolejne wartości x wyznaczane są z numeru kroku, więc obliczenie równoległe daje identyczny wynik jak sekwencyjne.
+     * Zwraca serię punktów funkcji w danym przedziale, a przy ponownym obliczeniu tego samego wzoru w tym samym
+     * przedziale i z tym samym krokiem zwraca serię z pamięci podręcznej. Jeśli w pamięci podręcznej jest seria
+     * z przedziału nakładającego się, którego początek leży na siatce nowego przedziału, obliczane są tylko brakujące
+     * fragmenty nowego przedziału.
      *
      * @param startValue - wartość początkowa
      * @param endValue - wartość końcowa
      * @param equalisation - wyrażenie w postaci stringu
      * @param step - krok co jaki wykonywane jest obliczenie
      * @param parserProgress - aktualny postęp operacji
-     * @return - lista punktów należących do funkcji
+     * @return - seria punktów należących do funkcji
      */
-    List<Point2D.Double> parseAndGetResult(String equalisation, int startValue, int endValue, float step, ParserProgress parserProgress) throws ParserException {
-        this.actualPosition = -1;
+    SampleSeries parseAndGetResult(String equalisation, double startValue, double endValue, float step, ParserProgress parserProgress) throws ParserException {
+        return recordSampling(new String[]{equalisation}, startValue, endValue, step,
+                () -> new SampleSeries[]{getResult(equalisation, startValue, endValue, step, parserProgress)})[0];
+    }
+
+    private SampleSeries getResult(String equalisation, double startValue, double endValue, float step, ParserProgress parserProgress) throws ParserException {
+        this.parserProgress = parserProgress;
+        this.progress = 0;
+
+        CalculationCache.Key key = createKey(equalisation, startValue, endValue, step);
+        SampleSeries result = getCachedResult(key);
+        if (result != null)
+            return result;
+
+        Evaluator evaluator = createEvaluator(equalisation);
+        boolean reduced = isReduced(startValue, endValue, step);
+        Map.Entry<CalculationCache.Key, SampleSeries> previous = cache != null && !reduced ? cache.findOverlapping(key) : null;
+
+        result = previous != null ? spliceFixedStep(previous, evaluator, startValue, endValue, step) : null;
+        if (result == null)
+            result = sample(evaluator, startValue, endValue, step);
+
+        result = result.withValueRange(getValueRange(evaluator, startValue, endValue));
+        if (!reduced)
+            putCachedResult(key, result);
+        return result;
+    }
+
+    /**
+     * Wyznacza punkty kilku funkcji ze stałym krokiem w tym samym przedziale, aby narysować je na jednym wykresie.
+     * Serie z pamięci podręcznej są zwracane bez obliczania, a serie z przedziału nakładającego się, leżące na tej
+     * samej siatce wartości x, uzupełniane o brakujące fragmenty. Pozostałe funkcje są obliczane razem na wspólnej siatce wartości x, wyznaczanej raz
+     * dla każdego bloku punktów, więc zwrócone serie tych funkcji współdzielą tablicę wartości x.
+     *
+     * @param equalisations - wyrażenia w postaci stringu
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @param parserProgress - aktualny postęp operacji
+     * @return - serie punktów kolejnych funkcji
+     */
+    List<SampleSeries> parseAndGetResults(String[] equalisations, double startValue, double endValue, float step, ParserProgress parserProgress) throws ParserException {
+        return Arrays.asList(recordSampling(equalisations, startValue, endValue, step,
+                () -> getResults(equalisations, startValue, endValue, step, parserProgress)));
+    }
+
+    private SampleSeries[] getResults(String[] equalisations, double startValue, double endValue, float step, ParserProgress parserProgress) throws ParserException {
+        this.parserProgress = parserProgress;
+
+        SampleSeries[] results = new SampleSeries[equalisations.length];
+        List<Integer> missing = new ArrayList<>();
+        List<Evaluator> evaluators = new ArrayList<>();
+        boolean reduced = isReduced(startValue, endValue, step);
+
+        for (int i = 0; i < equalisations.length; i++) {
+            CalculationCache.Key key = createKey(equalisations[i], startValue, endValue, step);
+            results[i] = cache != null ? cache.getResult(key) : null;
+            if (results[i] != null)
+                continue;
+
+            Evaluator evaluator = createEvaluator(equalisations[i]);
+            Map.Entry<CalculationCache.Key, SampleSeries> previous = cache != null && !reduced ? cache.findOverlapping(key) : null;
+
+            SampleSeries spliced = previous != null ? spliceFixedStep(previous, evaluator, startValue, endValue, step) : null;
+            if (spliced != null) {
+                results[i] = spliced.withValueRange(getValueRange(evaluator, startValue, endValue));
+                putCachedResult(key, results[i]);
+            } else {
+                missing.add(i);
+                evaluators.add(evaluator);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            this.progress = 0;
+            SampleSeries[] sampled = sample(evaluators.toArray(new Evaluator[0]), startValue, endValue, step);
+            for (int i = 0; i < sampled.length; i++) {
+                int function = missing.get(i);
+                results[function] = sampled[i].withValueRange(getValueRange(evaluators.get(i), startValue, endValue));
+                if (!reduced)
+                    putCachedResult(createKey(equalisations[function], startValue, endValue, step), results[function]);
+            }
+        } else if (parserProgress != null)
+            parserProgress.onProgressChange(100);
+
+        return results;
+    }
+
+    /**
+     * Wyznacza punkty kilku funkcji próbkowaniem adaptacyjnym. Punkty są zagęszczane tam, gdzie dana funkcja
+     * szybko się zmienia, więc każda funkcja ma własne wartości x i funkcje są obliczane po kolei.
+     * Postęp obliczenia wszystkich funkcji jest zgłaszany jako jeden postęp od 0 do 100%.
+     *
+     * @param equalisations - wyrażenia w postaci stringu
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param sampler - próbkowanie adaptacyjne z ustaloną tolerancją i głębokością podziału
+     * @param parserProgress - aktualny postęp operacji
+     * @return - serie punktów kolejnych funkcji
+     */
+    List<SampleSeries> parseAndGetResults(String[] equalisations, double startValue, double endValue, AdaptiveSampler sampler, ParserProgress parserProgress) throws ParserException {
+        SampleSeries[] results = new SampleSeries[equalisations.length];
+
+        for (int i = 0; i < equalisations.length; i++)
+            results[i] = parseAndGetResult(equalisations[i], startValue, endValue, sampler,
+                    getFunctionProgress(parserProgress, i, equalisations.length));
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Przelicza postęp obliczenia jednej z kilku funkcji na postęp obliczenia wszystkich funkcji
+     * @param parserProgress - postęp wszystkich funkcji
+     * @param function - numer funkcji
+     * @param functionCount - ilość funkcji
+     */
+    private static ParserProgress getFunctionProgress(ParserProgress parserProgress, int function, int functionCount) {
+        if (parserProgress == null)
+            return null;
+
+        return new ParserProgress() {
+            @Override
+            public void onProgressChange(int percentageProgress) {
+                parserProgress.onProgressChange((function * 100 + percentageProgress) / functionCount);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return parserProgress.isCancelled();
+            }
+        };
+    }
+
+    /**
+     * Oblicza punkty funkcji ze stałym krokiem w przedziale, równolegle lub sekwencyjnie
+     */
+    private SampleSeries sample(Evaluator evaluator, double startValue, double endValue, float step) throws ParserException {
+        return sample(new Evaluator[]{evaluator}, startValue, endValue, step)[0];
+    }
+
+    /**
+     * Oblicza punkty kilku funkcji ze stałym krokiem na wspólnej siatce wartości x, równolegle lub sekwencyjnie.
+     * Sekwencyjnie kolejne bloki są liczone dla wszystkich funkcji, a przed każdym blokiem sprawdzane jest,
+     * czy obliczenie nie zostało anulowane.
+     * Jeśli punktów jest więcej niż MAX_IN_MEMORY_SAMPLES (właściwość functiondrawer.maxSamples), każda funkcja
+     * jest liczona fragmentami i w pamięci zostaje tylko jej redukcja do kolumn pikseli. Punkty w pełnej rozdzielczości
+     * nie są wtedy nigdzie przechowywane i można je uzyskać jedynie obliczając wzór ponownie przez SampleExporter.
+     * Czas obliczenia i ilość punktów trafiają do metryk.
+     */
+    private SampleSeries[] sample(Evaluator[] evaluators, double startValue, double endValue, float step) throws ParserException {
+        long start = System.nanoTime();
+        SampleSeries[] results = sampleFixedStep(evaluators, startValue, endValue, step);
+        Metrics.get().recordEvaluation(System.nanoTime() - start, stepCount * evaluators.length);
+        return results;
+    }
+
+    private SampleSeries[] sampleFixedStep(Evaluator[] evaluators, double startValue, double endValue, float step) throws ParserException {
+        stepCount = getSampleCount(startValue, endValue, step);
+
+        if (isReduced(startValue, endValue, step)) {
+            SampleSeries[] results = new SampleSeries[evaluators.length];
+            for (int i = 0; i < evaluators.length; i++)
+                results[i] = sampleInChunks(evaluators[i], startValue, endValue, step);
+            return results;
+        }
+
+        if (parallel)
+            return new ParallelSampler(evaluators, startValue, step, (int) stepCount, parserProgress).sample();
+
+        int count = (int) stepCount;
+        double[] xs = new double[count];
+        double[][] ys = new double[evaluators.length][count];
+        samplePiece(evaluators, startValue, step, xs, ys, 0, count, 0);
+
+        return toSeries(xs, ys);
+    }
+
+    /**
+     * Oblicza blokami punkty od numeru kroku from do to, sprawdzając przed każdym blokiem anulowanie
+     * @param evaluators - skompilowane wyrażenia
+     * @param startValue - wartość początkowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @param xs - wspólna tablica wartości x
+     * @param ys - tablice wartości kolejnych funkcji
+     * @param from - pierwszy numer kroku (włącznie)
+     * @param to - ostatni numer kroku (wyłącznie)
+     * @param done - ilość punktów obliczonych wcześniej w tym samym obliczeniu, doliczana do postępu
+     */
+    private void samplePiece(Evaluator[] evaluators, double startValue, float step, double[] xs, double[][] ys,
+                             int from, int to, long done) throws ParserException {
+        for (int block = from; block < to; block += BLOCK_SIZE) {
+            int blockEnd = Math.min(block + BLOCK_SIZE, to);
+            checkCancelled(parserProgress);
+            sampleBlock(evaluators, startValue, step, xs, ys, block, blockEnd);
+            changeProgress(done + blockEnd - from);
+        }
+    }
+
+    /**
+     * Składa serię ze stałym krokiem dla przedziału [startValue, endValue] z serii przedziału nakładającego się.
+     * Punkty zapamiętanej serii są przepisywane tylko wtedy, gdy leżą na siatce nowego przedziału, czyli gdy początki
+     * przedziałów różnią się o całkowitą ilość kroków, a wszystkie wartości x są wyznaczane jako startValue + k * step,
+     * tak jak przy obliczeniu całego przedziału. Obliczane są tylko punkty na lewo i na prawo od przepisanych,
+     * a postęp obu fragmentów jest zgłaszany jako jeden postęp od 0 do 100%.
+     * @param previous - klucz i seria przedziału nakładającego się, obliczona z tym samym krokiem
+     * @param evaluator - skompilowane wyrażenie
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @return - seria punktów lub null, jeśli zapamiętana seria nie leży na siatce nowego przedziału lub nie ma
+     * z nim punktów wspólnych
+     */
+    private SampleSeries spliceFixedStep(Map.Entry<CalculationCache.Key, SampleSeries> previous, Evaluator evaluator,
+                                         double startValue, double endValue, float step) throws ParserException {
+        double offset = (startValue - previous.getKey().getStartValue()) / step;
+        long shift = Math.round(offset);
+        if (Math.abs(offset - shift) > GRID_TOLERANCE)
+            return null;
+
+        SampleSeries cached = previous.getValue();
+        int count = (int) getSampleCount(startValue, endValue, step);
+        int first = (int) Math.min(count, Math.max(0, -shift));
+        int last = (int) Math.max(-1, Math.min(count - 1, cached.size() - 1 - shift));
+        if (first > last)
+            return null;
+
+        long start = System.nanoTime();
+        double[] xs = new double[count];
+        double[][] ys = new double[1][count];
+        Evaluator[] evaluators = {evaluator};
+        this.progress = 0;
+        stepCount = first + (count - 1 - last);
+
+        samplePiece(evaluators, startValue, step, xs, ys, 0, first, 0);
+        for (int i = first; i <= last; i++) {
+            xs[i] = getSampleX(startValue, step, i);
+            ys[0][i] = cached.getY((int) (i + shift));
+        }
+        samplePiece(evaluators, startValue, step, xs, ys, last + 1, count, first);
+
+        if (stepCount == 0 && parserProgress != null)
+            parserProgress.onProgressChange(100);
+        Metrics.get().recordEvaluation(System.nanoTime() - start, stepCount);
+        return new SampleSeries(xs, ys[0]);
+    }
+
+    /**
+     * Oblicza punkty funkcji ze stałym krokiem fragmentami po CHUNK_SIZE punktów. Każdy fragment zostaje zredukowany
+     * do REDUCED_COLUMNS kolumn metodą M4, a gdy zredukowanych punktów zbierze się więcej niż MAX_REDUCED_SAMPLES,
+     * redukcja jest powtarzana dla całej serii, więc zajmowana pamięć nie zależy od ilości punktów.
+     * Ilość punktów jest liczona na typie long i nie jest ograniczona. Obliczone punkty są po redukcji odrzucane,
+     * więc pełną rozdzielczość można uzyskać jedynie obliczając wzór ponownie przez SampleExporter
+     * @return - seria punktów zredukowana do rozdzielczości ekranu
+     */
+    private SampleSeries sampleInChunks(Evaluator evaluator, double startValue, double endValue, float step) throws ParserException {
+        long count = getSampleCount(startValue, endValue, step);
+        double xScale = REDUCED_COLUMNS / (endValue - startValue), xOrigin = -startValue * xScale;
+        double[] xs = new double[(int) Math.min(CHUNK_SIZE, count)], ys = new double[xs.length];
+        SampleSeries reduced = new SampleSeries((REDUCED_COLUMNS + 2) * 5);
+
+        for (long chunk = 0; chunk < count; chunk += xs.length) {
+            int size = (int) Math.min(xs.length, count - chunk);
+
+            for (int from = 0; from < size; from += BLOCK_SIZE) {
+                int to = Math.min(from + BLOCK_SIZE, size);
+                checkCancelled(parserProgress);
+
+                for (int i = from; i < to; i++)
+                    xs[i] = getSampleX(startValue, step, chunk + i);
+                evaluator.applyAsDouble(xs, ys, from, to);
+                changeProgress(chunk + to);
+            }
+
+            reduced.addAll(PixelDecimator.reduce(new SampleSeries(xs, ys, size), xOrigin, xScale, REDUCED_COLUMNS));
+            if (reduced.size() > MAX_REDUCED_SAMPLES)
+                reduced = PixelDecimator.reduce(reduced, xOrigin, xScale, REDUCED_COLUMNS);
+        }
+
+        return reduced;
+    }
+
+    /**
+     * Oblicza blok punktów funkcji: wyznacza wartości x, oblicza je kolejnymi evaluatorami i sprawdza zakres wyników
+     * @param evaluators - skompilowane wyrażenia
+     * @param startValue - wartość początkowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @param xs - wspólna tablica wartości x
+     * @param ys - tablice wartości kolejnych funkcji
+     * @param from - pierwszy numer kroku (włącznie)
+     * @param to - ostatni numer kroku (wyłącznie)
+     */
+    static void sampleBlock(Evaluator[] evaluators, double startValue, float step, double[] xs, double[][] ys, int from, int to) throws ParserException {
+        for (int i = from; i < to; i++)
+            xs[i] = getSampleX(startValue, step, i);
+
+        for (int function = 0; function < evaluators.length; function++) {
+            evaluators[function].applyAsDouble(xs, ys[function], from, to);
+        }
+    }
+
+    /**
+     * Wyznacza przed próbkowaniem zakres wartości funkcji, do którego zostaną dopasowane osie wykresu.
+     * Przedział zostaje podzielony na RANGE_INTERVALS odcinków, a dla każdego odcinka arytmetyka przedziałowa daje
+     * ograniczenie wartości funkcji. Wynikiem jest suma ograniczeń odcinków, na których funkcja jest ograniczona
+     * i wszędzie określona, więc zawiera każdą wartość z tych odcinków, a odcinki z biegunem (np. 1/x wokół zera)
+     * lub z wartościami odciętymi przez EvaluationPolicy wychodzą poza wykres.
+     * @param evaluator - skompilowane wyrażenie
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @return - zakres wartości lub null, jeśli nie da się go wyznaczyć
+     */
+    static Interval getValueRange(Evaluator evaluator, double startValue, double endValue) {
+        if (!(endValue > startValue))
+            return null;
+
+        Interval range = Interval.EMPTY;
+        for (int i = 0; i < RANGE_INTERVALS; i++) {
+            double from = startValue + (endValue - startValue) * i / RANGE_INTERVALS;
+            double to = i == RANGE_INTERVALS - 1 ? endValue : startValue + (endValue - startValue) * (i + 1) / RANGE_INTERVALS;
+            Interval bounds = evaluator.applyAsInterval(from, to);
+            if (bounds == null)
+                return null;
+            if (bounds.isBounded() && !bounds.isUndefined())
+                range = range.union(bounds);
+        }
+
+        return range.isEmpty() ? null : range;
+    }
+
+    /**
+     * Tworzy serie punktów kolejnych funkcji, które współdzielą tablicę wartości x
+     */
+    static SampleSeries[] toSeries(double[] xs, double[][] ys) {
+        SampleSeries[] series = new SampleSeries[ys.length];
+        for (int function = 0; function < ys.length; function++)
+            series[function] = new SampleSeries(xs, ys[function]);
+        return series;
+    }
+
+    /**
+     * Kompiluje równanie i wyznacza punkty funkcji próbkowaniem adaptacyjnym, zamiast ze stałym krokiem.
+     * Tak jak przy stałym kroku, seria z pamięci podręcznej jest uzupełniana tylko o brakujące fragmenty przedziału.
+     * Gęstość punktów zależy tu od długości przedziału, więc seria z dłuższego przedziału (np. przed przybliżeniem
+     * wykresu) nie jest używana, aby przybliżony fragment nie został narysowany z rzadszych punktów.
+     *
+     * @param equalisation - wyrażenie w postaci stringu
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param sampler - próbkowanie adaptacyjne z ustaloną tolerancją i głębokością podziału
+     * @param parserProgress - aktualny postęp operacji
+     * @return - seria punktów należących do funkcji
+     */
+    SampleSeries parseAndGetResult(String equalisation, double startValue, double endValue, AdaptiveSampler sampler, ParserProgress parserProgress) throws ParserException {
+        return recordSampling(new String[]{equalisation}, startValue, endValue, sampler,
+                () -> new SampleSeries[]{getAdaptiveResult(equalisation, startValue, endValue, sampler, parserProgress)})[0];
+    }
+
+    private SampleSeries getAdaptiveResult(String equalisation, double startValue, double endValue, AdaptiveSampler sampler, ParserProgress parserProgress) throws ParserException {
         this.parserProgress = parserProgress;
 
-        List<Point.Double> resultList = new ArrayList<>();
-        equalisation = addMultiplicationIfMissing(equalisation);
-        stepCount = (int) (Math.ceil(endValue - startValue) / step);
+        CalculationCache.Key key = createKey(equalisation, startValue, endValue, sampler);
+        SampleSeries result = getCachedResult(key);
+        if (result != null)
+            return result;
+
+        Evaluator evaluator = createEvaluator(equalisation);
+        Interval valueRange = getValueRange(evaluator, startValue, endValue);
+        Map.Entry<CalculationCache.Key, SampleSeries> previous = cache != null ? cache.findOverlapping(key) : null;
+        double previousLength = previous != null ? previous.getKey().getEndValue() - previous.getKey().getStartValue() : 0;
 
-        for (double i = startValue, stepProgress = 0; i <= endValue; i += step, stepProgress++) {
-            this.equalisation = equalisation.replace("x", new BigDecimal(i).toPlainString());
-            double calculatedValue = calculateEqualisation();
+        if (previous != null && previousLength <= (endValue - startValue) * MAX_SPLICED_RANGE_RATIO) {
+            result = RangeSplicer.splice(previous.getValue(), startValue, endValue,
+                    (from, to) -> sampleAdaptive(sampler, evaluator, from, to, (to - from) / previousLength, valueRange));
+        } else
+            result = sampleAdaptive(sampler, evaluator, startValue, endValue, 1, valueRange);
+
+        result = result.withValueRange(valueRange);
+        putCachedResult(key, result);
+        return result;
+    }
+
+    /**
+     * Wykonuje wyznaczanie punktów jako zdarzenie JFR, z ilością punktów albo z kodem błędu parsera
+     * @param equalisations - wzory funkcji
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param sampling - krok lub obiekt próbkowania adaptacyjnego
+     * @param calculation - wyznaczanie punktów
+     */
+    private static SampleSeries[] recordSampling(String[] equalisations, double startValue, double endValue, Object sampling,
+                                                 Sampling calculation) throws ParserException {
+        FlightRecorderEvents.SampleEvent event = new FlightRecorderEvents.SampleEvent();
+        event.begin();
+
+        try {
+            SampleSeries[] results = calculation.sample();
+            event.end(equalisations, startValue, endValue, sampling, results, null);
+            return results;
+
+        } catch (ParserException e) {
+            event.end(equalisations, startValue, endValue, sampling, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Wyznacza punkty próbkowaniem adaptacyjnym, zapisując czas obliczenia i ilość punktów w metrykach
+     */
+    private SampleSeries sampleAdaptive(AdaptiveSampler sampler, Evaluator evaluator, double startValue, double endValue, double fraction,
+                                        Interval valueRange) throws ParserException {
+        long start = System.nanoTime();
+        SampleSeries result = sampler.sample(evaluator, startValue, endValue, fraction, valueRange, parserProgress);
+        Metrics.get().recordEvaluation(System.nanoTime() - start, result.size());
+        return result;
+    }
 
-            if (hasPositiveScientificNotation(calculatedValue))
-                throw new ParserException(ParserException.MAX_REACHED, "");
+    /**
+     * Tworzy klucz pamięci podręcznej z wzoru, przedziału i sposobu próbkowania oraz z backendu i polityki obsługi
+     * niepoprawnych wartości tego parsera, ponieważ od nich również zależą punkty serii
+     * @param equalisation - wyrażenie w postaci stringu
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param sampling - krok lub obiekt próbkowania adaptacyjnego
+     */
+    private CalculationCache.Key createKey(String equalisation, double startValue, double endValue, Object sampling) {
+        return new CalculationCache.Key(addMultiplicationIfMissing(equalisation), backend, evaluationPolicy,
+                startValue, endValue, sampling);
+    }
 
-            resultList.add(new Point.Double(i, calculatedValue));
-            changeProgress((int) stepProgress);
-            actualPosition = -1;
+    /**
+     * Zwraca serię z pamięci podręcznej i zgłasza zakończenie obliczenia lub null, jeśli trzeba ją wyznaczyć
+     */
+    private SampleSeries getCachedResult(CalculationCache.Key key) {
+        SampleSeries result = cache != null ? cache.getResult(key) : null;
+
+        if (result != null) {
+            if (DEBUG)
+                System.out.println("Seria z pamięci podręcznej: " + key + ", trafienia: " + cache.getHitCount()
+                        + ", chybienia: " + cache.getMissCount());
+            if (parserProgress != null)
+                parserProgress.onProgressChange(100);
         }
 
-        return resultList;
+        return result;
+    }
+
+    private void putCachedResult(CalculationCache.Key key, SampleSeries result) {
+        if (cache != null)
+            cache.putResult(key, result);
+    }
+
+    /**
+     * Sprawdza, czy przedział ma więcej punktów niż MAX_IN_MEMORY_SAMPLES i zostanie obliczony fragmentami,
+     * z redukcją do kolumn pikseli. Zredukowana seria nie zawiera wszystkich punktów, więc nie trafia do pamięci
+     * podręcznej i nie jest uzupełniana fragmentami z serii z przedziału nakładającego się
+     */
+    private static boolean isReduced(double startValue, double endValue, float step) {
+        return getSampleCount(startValue, endValue, step) > MAX_IN_MEMORY_SAMPLES;
+    }
+
+    /**
+     * Zwraca ilość punktów funkcji w przedziale, wliczając oba jego końce
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     */
+    static long getSampleCount(double startValue, double endValue, float step) {
+        return (long) Math.floor((endValue - startValue) / step) + 1;
+    }
+
+    /**
+     * Zwraca wartość x dla podanego numeru kroku
+     * @param startValue - wartość początkowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @param index - numer kroku
+     */
+    static double getSampleX(double startValue, float step, long index) {
+        return startValue + index * (double) step;
+    }
+
+    /**
+     * Kompiluje równanie i zamienia je na evaluator wybranego backendu, np. aby obliczać punkty poza parserem
+     * @param equalisation - wyrażenie w postaci stringu
+     * @return - evaluator skompilowanego wyrażenia
+     */
+    Evaluator createEvaluator(String equalisation) throws ParserException {
+        Expression expression = compile(equalisation);
+        return evaluationPolicy.apply(expression, backend.create(expression));
+    }
+
+    /**
+     * Poprawia równanie matematyczne i przekształca je algorytmem rekurencyjnym w drzewo wyrażenia.
+     * Zwrócone wyrażenie jest niezmienne i może być obliczane wielokrotnie bez ponownego parsowania.
+     * Jeśli optymalizacja jest włączona, drzewo zostaje uproszczone przez ExpressionOptimizer, a powtarzające się
+     * poddrzewa przeniesione do slotów przez CommonSubexpressions.
+     * Z właściwością systemową functiondrawer.debug=true drzewo przed i po optymalizacji jest wypisywane na wyjście.
+     * Skompilowane wyrażenie trafia do pamięci podręcznej, więc ten sam wzór nie jest parsowany ponownie.
+     * Czas kompilacji wzoru spoza pamięci podręcznej trafia do metryk.
+     * @param equalisation - wyrażenie w postaci stringu
+     * @return - skompilowane wyrażenie
+     */
+    Expression compile(String equalisation) throws ParserException {
+        this.equalisation = addMultiplicationIfMissing(equalisation);
+        this.actualPosition = -1;
+
+        FlightRecorderEvents.CompileEvent event = new FlightRecorderEvents.CompileEvent();
+        event.begin();
+
+        Expression cached = cache != null ? cache.getExpression(this.equalisation) : null;
+        if (cached != null) {
+            event.end(this.equalisation, true, null);
+            return cached;
+        }
+
+        try {
+            long start = System.nanoTime();
+            Expression expression = parseAndOptimize();
+            Metrics.get().recordCompile(System.nanoTime() - start);
+            event.end(this.equalisation, false, null);
+            return expression;
+
+        } catch (ParserException e) {
+            event.end(this.equalisation, false, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Przekształca poprawione równanie w drzewo wyrażenia, optymalizuje je i zapamiętuje w pamięci podręcznej
+     */
+    private Expression parseAndOptimize() throws ParserException {
+        setActualChar();
+        Expression expression = parseExpression();
+
+        if (actualPosition < this.equalisation.length())
+            throw new ParserException(ParserException.UNKNOWN_CHAR, String.valueOf((char) actualChar));
+
+        if (DEBUG)
+            System.out.println("Drzewo wyrażenia: " + expression);
+
+        if (optimization) {
+            expression = CommonSubexpressions.eliminate(ExpressionOptimizer.optimize(expression));
+            if (DEBUG)
+                System.out.println("Drzewo po optymalizacji: " + expression);
+        }
+
+        if (cache != null)
+            cache.putExpression(this.equalisation, expression);
+
+        return expression;
     }
 
     /**
@@ -77,39 +664,25 @@ class MathParser {
         return builder.toString();
     }
 
-    /**
-     * Sprawdza czy wartość nie przekracza zakresu (maksymalny zakres ustaliłem na moment pojawienia się notacji naukowych)
-     * @param value - sprawdzana wartość
-     */
-    private boolean hasPositiveScientificNotation(double value) {
-        String valueString = String.valueOf(value);
-        return (valueString.contains("E") || valueString.contains("e")) &&
-                (!valueString.contains("E-") && !valueString.contains("e-"));
-    }
-
     /**
      * Oblicza aktualny postęp
      * @param actualStep - aktualnie wykonany krok
      */
-    private void changeProgress(int actualStep) {
+    private void changeProgress(long actualStep) {
         int previousProgress = progress;
-        progress = (int) Math.ceil(((float) actualStep / (float) stepCount) * 100f);
+        progress = getPercentage(actualStep, stepCount);
 
         if (progress > previousProgress && parserProgress != null && progress <= 100)
             parserProgress.onProgressChange(progress);
     }
 
     /**
-     * Rozpoczyna algorym rekurencyjny.
+     * Zwraca postęp w procentach zaokrąglony w górę, liczony na liczbach całkowitych
+     * @param done - ilość wykonanych kroków
+     * @param total - ilość wszystkich kroków
      */
-    private double calculateEqualisation() throws ParserException {
-        setActualChar();
-        Double calculatedValue = parseExpression();
-
-        if (actualPosition < equalisation.length())
-            throw new ParserException(ParserException.UNKNOWN_CHAR, String.valueOf((char) actualChar));
-
-        return calculatedValue;
+    static int getPercentage(long done, long total) {
+        return total > 0 ? (int) ((done * 100 + total - 1) / total) : 100;
     }
 
     /**
@@ -122,16 +695,16 @@ class MathParser {
     /**
      * Sprawdza czy następuje dodawanie czy odejmowaie
      */
-    private double parseExpression() throws ParserException {
-        double calculatedValue = parseTerm();
+    private Expression parseExpression() throws ParserException {
+        Expression expression = parseTerm();
         for (; ; ) {
             if (isAddition())
-                calculatedValue += parseTerm();
+                expression = new Expression.Operation('+', expression, parseTerm());
 
             else if (isSubtraction())
-                calculatedValue -= parseTerm();
+                expression = new Expression.Operation('-', expression, parseTerm());
 
-            else return calculatedValue;
+            else return expression;
         }
     }
 
@@ -163,21 +736,18 @@ class MathParser {
     /**
      * Sprawdza czy występuje mnożenie lub dzielenie
      */
-    private double parseTerm() throws ParserException {
-        double calculatedValue = parseFactor();
+    private Expression parseTerm() throws ParserException {
+        Expression expression = parseFactor();
         for (; ; ) {
             if (isMultiplication())
-                calculatedValue *= parseFactor();
+                expression = new Expression.Operation('*', expression, parseFactor());
 
-            else if (isDivision()) {
-                double value = parseFactor();
-                if (value == 0)
-                    throw new ParserException(ParserException.ZERO_DIVISION, "");
-                calculatedValue /= value;
+            else if (isDivision())
+                expression = new Expression.Operation('/', expression, parseFactor());
 
-            } else if(isExponentiation())
-                calculatedValue = Math.pow(calculatedValue, parseFactor());
-            else return calculatedValue;
+            else if(isExponentiation())
+                expression = new Expression.Operation('^', expression, parseFactor());
+            else return expression;
         }
     }
 
@@ -196,34 +766,38 @@ class MathParser {
     /**
      * Sprawdza ewentualną negacje funkcji
      * Bada czy podane wyrażenie jest znanie i jeśli tak przetważa je
-     * Odczytuje wartość dla wyrażenia z nawiasów
+     * Odczytuje wyrażenie z nawiasów
+     * Rozpoznaje zmienną x
      */
-    private double parseFactor() throws ParserException {
-        double calculatedValue;
-        int startPos = this.actualPosition;
+    private Expression parseFactor() throws ParserException {
+        Expression expression;
 
         if (isUnaryPlus())
             return parseFactor();
 
         if (isUnaryMinus())
-            return -parseFactor();
+            return new Expression.Negation(parseFactor());
 
         if (isParenthesis()) {
-            calculatedValue = parseExpression();
+            expression = parseExpression();
             removeChar(')');
 
         } else if (isCharNumber()) {
-            calculatedValue = readNumber(startPos);
+            expression = new Expression.Constant(readNumber(this.actualPosition));
+
+        } else if (isCharVariable()) {
+            setActualChar();
+            expression = new Expression.Variable();
 
         } else if (isCharLetter()) {
-            String function = readFunction(startPos);
-            calculatedValue = parseFactor();
-            calculatedValue = calculateFunction(function, calculatedValue);
+            String function = readFunction(this.actualPosition);
+            Expression.Function.getType(function);
+            expression = new Expression.Function(function, parseFactor());
 
         } else
             throw new ParserException(ParserException.UNKNOWN_CHAR, String.valueOf((char) actualChar));
 
-        return calculatedValue;
+        return expression;
     }
 
     private boolean isUnaryPlus() {
@@ -247,46 +821,57 @@ class MathParser {
         return Double.parseDouble(equalisation.substring(startPos, this.actualPosition));
     }
 
-    private boolean isCharLetter() {
-        return actualChar >= 'a' && actualChar <= 'z';
+    private boolean isCharVariable() {
+        return actualChar == 'x';
     }
 
-    private String readFunction(int startPos) {
-        while (actualChar >= 'a' && actualChar <= 'z') setActualChar();
-        return equalisation.substring(startPos, this.actualPosition);
+    private boolean isCharLetter() {
+        return actualChar >= 'a' && actualChar <= 'z';
     }
 
     /**
-     * Oblicza funkcję dla podanego parametru na podstawie jej nazwy
-     * @param function - funkcja matematyczna
-     * @param x - wartość dla której będzie obliczana funkcja
+     * Odczytuje nazwę funkcji. Argument może zostać zapisany bez nawiasów, np. sinx lub sqrtx, dlatego jeśli
+     * po najdłuższej pasującej znanej nazwie następuje zmienna x, odczytana zostaje tylko ta nazwa
+     * @param startPos - pozycja pierwszej litery
      */
-    private double calculateFunction(String function, double x) throws ParserException {
-        switch (function) {
-            case Strings.sqrtFunction:
-                double sqrt = Math.sqrt(x);
-                if (Double.isNaN(sqrt))
-                    throw new ParserException(ParserException.SQRT_PROBLEM, String.valueOf(x));
-                return sqrt;
+    private String readFunction(int startPos) {
+        while (actualChar >= 'a' && actualChar <= 'z') setActualChar();
+        String letters = equalisation.substring(startPos, this.actualPosition);
 
-            case Strings.sineFunction:
-                return Math.sin(x);
+        String function = null;
+        for (String name : Expression.Function.NAMES)
+            if (letters.startsWith(name + "x") && (function == null || name.length() > function.length()))
+                function = name;
 
-            case Strings.cosineFunction:
-                return Math.cos(x);
+        if (function == null)
+            return letters;
 
-            case Strings.tangentFunction:
-                return Math.tan(x);
+        actualPosition = startPos + function.length() - 1;
+        setActualChar();
+        return function;
+    }
 
-            case Strings.logarithmFunction:
-                return Math.log(x);
+    /**
+     * Przerywa obliczenie wyjątkiem, jeśli zostało anulowane
+     * @param parserProgress - aktualny postęp operacji
+     */
+    static void checkCancelled(ParserProgress parserProgress) throws ParserException {
+        if (parserProgress != null && parserProgress.isCancelled())
+            throw new ParserException(ParserException.CANCELLED, "");
+    }
 
-            default:
-                throw new ParserException(ParserException.UNKNOWN_FUNCTION, function);
-        }
+    private interface Sampling {
+        SampleSeries[] sample() throws ParserException;
     }
 
     interface ParserProgress {
         void onProgressChange(int percentageProgress);
+
+        /**
+         * @return - true jeśli obliczenie zostało anulowane i powinno zostać przerwane
+         */
+        default boolean isCancelled() {
+            return false;
+        }
     }
 }
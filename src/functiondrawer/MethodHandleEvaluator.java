@@ -0,0 +1,184 @@
+package functiondrawer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * Tworzy evaluatory składające drzewo wyrażenia w jeden łańcuch MethodHandle o typie (double)double.
+ * Każdy węzeł drzewa zostaje zamieniony na kombinację uchwytów metod, dzięki czemu obliczenie nie wykonuje
+ * wirtualnych wywołań dla kolejnych węzłów. Wspólne podwyrażenia są obliczane raz i przekazywane do dalszej
+ * części łańcucha jako dodatkowe argumenty.
+ * JIT wstawia łańcuch w miejsce wywołania tylko wtedy, gdy uchwyt jest stałą, więc dla każdego wyrażenia zostaje
+ * zdefiniowana osobna klasa ukryta z szablonu CompiledExpression, trzymająca uchwyt w polu static final.
+ */
+final class MethodHandleEvaluator {
+    private final static MethodType UNARY = MethodType.methodType(double.class, double.class);
+    private final static MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+    private final static MethodHandle ADD, SUBTRACT, MULTIPLY, DIVIDE, POWER, NEGATE, FUNCTION;
+    private final static byte[] TEMPLATE;
+
+    static {
+        try (InputStream template = CompiledExpression.class.getResourceAsStream(CompiledExpression.class.getSimpleName() + ".class")) {
+            if (template == null)
+                throw new IOException(CompiledExpression.class.getName());
+
+            TEMPLATE = template.readAllBytes();
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ADD = lookup.findStatic(MethodHandleEvaluator.class, "add", BINARY);
+            SUBTRACT = lookup.findStatic(MethodHandleEvaluator.class, "subtract", BINARY);
+            MULTIPLY = lookup.findStatic(MethodHandleEvaluator.class, "multiply", BINARY);
+            DIVIDE = lookup.findStatic(MethodHandleEvaluator.class, "divide", BINARY);
+            POWER = lookup.findStatic(Math.class, "pow", BINARY);
+            NEGATE = lookup.findStatic(MethodHandleEvaluator.class, "negate", UNARY);
+            FUNCTION = lookup.findStatic(Expression.Function.class, "calculate",
+                    MethodType.methodType(double.class, int.class, double.class));
+
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MethodHandleEvaluator() {
+    }
+
+    /**
+     * Składa wyrażenie w uchwyt metody i definiuje dla niego klasę ukrytą z szablonu CompiledExpression.
+     * Klasa nie jest silnie związana z tą klasą, więc zostaje usunięta, gdy evaluator przestanie być używany.
+     * @param expression - drzewo wyrażenia, które zostanie złożone w uchwyt metody
+     */
+    static Evaluator create(Expression expression) {
+        MethodHandle handle = expression instanceof Expression.Shared ? toSharedHandle((Expression.Shared) expression)
+                : toHandle(expression, 0);
+
+        try {
+            MethodHandles.Lookup compiled = MethodHandles.lookup().defineHiddenClassWithClassData(TEMPLATE, handle, true);
+            return (Evaluator) compiled.findConstructor(compiled.lookupClass(),
+                    MethodType.methodType(void.class, Expression.class)).invoke(expression);
+
+        } catch (RuntimeException | Error e) {
+            throw e;
+
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+    /**
+     * Składa wyrażenie ze wspólnymi podwyrażeniami. Każdy węzeł przyjmuje x oraz wartości wszystkich slotów,
+     * a następnie, zaczynając od ostatniej definicji, wartość slotu zostaje obliczona przez foldArguments
+     * i przekazana jako kolejny argument. Wynikowy uchwyt ma typ (double)double.
+     */
+    private static MethodHandle toSharedHandle(Expression.Shared shared) {
+        int slotCount = shared.definitions.length;
+        MethodHandle result = toHandle(shared.body, slotCount);
+
+        for (int slot = slotCount - 1; slot >= 0; slot--) {
+            MethodHandle definition = toHandle(shared.definitions[slot], slotCount);
+            Object[] unusedSlots = new Object[slotCount - slot];
+            Arrays.fill(unusedSlots, 0.0);
+            definition = MethodHandles.insertArguments(definition, slot + 1, unusedSlots);
+
+            int[] reorder = new int[slot + 2];
+            reorder[slot + 1] = 0;
+            for (int i = 0; i <= slot; i++)
+                reorder[i] = i + 1;
+
+            MethodHandle permuted = MethodHandles.permuteArguments(result, getType(slot + 1), reorder);
+            result = MethodHandles.foldArguments(permuted, definition);
+        }
+
+        return result;
+    }
+
+    /**
+     * Zamienia węzeł drzewa na uchwyt metody przyjmujący x oraz wartości slotów
+     * @param expression - węzeł drzewa
+     * @param slotCount - ilość slotów
+     */
+    private static MethodHandle toHandle(Expression expression, int slotCount) {
+        MethodType type = getType(slotCount);
+
+        if (expression instanceof Expression.Constant) {
+            double value = ((Expression.Constant) expression).value;
+            return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, type.parameterList());
+        }
+
+        if (expression instanceof Expression.Variable)
+            return MethodHandles.permuteArguments(MethodHandles.identity(double.class), type, 0);
+
+        if (expression instanceof Expression.Slot)
+            return MethodHandles.permuteArguments(MethodHandles.identity(double.class), type, ((Expression.Slot) expression).index + 1);
+
+        if (expression instanceof Expression.Negation)
+            return MethodHandles.filterReturnValue(toHandle(((Expression.Negation) expression).operand, slotCount), NEGATE);
+
+        if (expression instanceof Expression.Function) {
+            Expression.Function function = (Expression.Function) expression;
+            return MethodHandles.filterReturnValue(toHandle(function.argument, slotCount),
+                    MethodHandles.insertArguments(FUNCTION, 0, function.type));
+        }
+
+        Expression.Operation operation = (Expression.Operation) expression;
+        MethodHandle combined = MethodHandles.collectArguments(getOperator(operation.operator), 1, toHandle(operation.right, slotCount));
+        combined = MethodHandles.collectArguments(combined, 0, toHandle(operation.left, slotCount));
+
+        int[] reorder = new int[(slotCount + 1) * 2];
+        for (int i = 0; i < reorder.length; i++)
+            reorder[i] = i % (slotCount + 1);
+
+        return MethodHandles.permuteArguments(combined, type, reorder);
+    }
+
+    /**
+     * Zwraca typ uchwytu węzła: (double x, double slot0, ..., double slotN)double
+     */
+    private static MethodType getType(int slotCount) {
+        Class<?>[] parameters = new Class<?>[slotCount + 1];
+        Arrays.fill(parameters, double.class);
+        return MethodType.methodType(double.class, parameters);
+    }
+
+    private static MethodHandle getOperator(char operator) {
+        switch (operator) {
+            case '+':
+                return ADD;
+
+            case '-':
+                return SUBTRACT;
+
+            case '*':
+                return MULTIPLY;
+
+            case '/':
+                return DIVIDE;
+
+            default:
+                return POWER;
+        }
+    }
+
+    private static double add(double left, double right) {
+        return left + right;
+    }
+
+    private static double subtract(double left, double right) {
+        return left - right;
+    }
+
+    private static double multiply(double left, double right) {
+        return left * right;
+    }
+
+    private static double divide(double left, double right) {
+        return left / right;
+    }
+
+    private static double negate(double value) {
+        return -value;
+    }
+}
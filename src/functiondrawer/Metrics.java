@@ -0,0 +1,188 @@
+package functiondrawer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metryki czasu obliczeń, rysowania i zapisu, wspólne dla całej aplikacji.
+ * Po wywołaniu register() są widoczne w JConsole jako functiondrawer:type=Metrics, a z właściwością
+ * functiondrawer.metricsLog ustawioną na ilość sekund są co tyle wypisywane na wyjście.
+ * Zapis pomiaru to kilka operacji atomowych, więc metryki są zbierane zawsze.
+ */
+final class Metrics implements MetricsMXBean {
+    private final static Metrics INSTANCE = new Metrics();
+    private final static String OBJECT_NAME = "functiondrawer:type=Metrics";
+    private final static long LOG_PERIOD_SECONDS = Long.getLong("functiondrawer.metricsLog", 0);
+    private final LatencyHistogram queueWait = new LatencyHistogram(), calculation = new LatencyHistogram(),
+            compile = new LatencyHistogram(), evaluation = new LatencyHistogram(), paint = new LatencyHistogram(),
+            encode = new LatencyHistogram();
+    private final AtomicLong calculations = new AtomicLong(), failedCalculations = new AtomicLong(),
+            cancelledCalculations = new AtomicLong(), samples = new AtomicLong();
+    private volatile CalculationCache cache;
+
+    private Metrics() {
+    }
+
+    static Metrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publikuje metryki w platformowym serwerze MBean i uruchamia okresowe wypisywanie, jeśli zostało włączone
+     * @param cache - pamięć podręczna, której trafienia i chybienia mają być widoczne w metrykach, lub null
+     */
+    static void register(CalculationCache cache) {
+        INSTANCE.cache = cache;
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+
+        if (LOG_PERIOD_SECONDS > 0) {
+            ScheduledExecutorService logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-log");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.scheduleAtFixedRate(() -> System.out.println(INSTANCE), LOG_PERIOD_SECONDS, LOG_PERIOD_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    void recordQueueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    /**
+     * Zapisuje czas i wynik obliczenia zleconego przez interfejs użytkownika
+     * @param nanos - czas obliczenia
+     * @param failed - true jeśli obliczenie zakończyło się błędem
+     * @param cancelled - true jeśli obliczenie zostało anulowane
+     */
+    void recordCalculation(long nanos, boolean failed, boolean cancelled) {
+        calculation.record(nanos);
+        calculations.incrementAndGet();
+        if (cancelled)
+            cancelledCalculations.incrementAndGet();
+        else if (failed)
+            failedCalculations.incrementAndGet();
+    }
+
+    void recordCompile(long nanos) {
+        compile.record(nanos);
+    }
+
+    /**
+     * Zapisuje czas wyznaczania punktów i ich ilość
+     * @param nanos - czas wyznaczania punktów
+     * @param sampleCount - ilość wyznaczonych punktów
+     */
+    void recordEvaluation(long nanos, long sampleCount) {
+        evaluation.record(nanos);
+        samples.addAndGet(sampleCount);
+    }
+
+    void recordPaint(long nanos) {
+        paint.record(nanos);
+    }
+
+    void recordEncode(long nanos) {
+        encode.record(nanos);
+    }
+
+    @Override
+    public LatencySnapshot getQueueWait() {
+        return queueWait.getSnapshot();
+    }
+
+    @Override
+    public LatencySnapshot getCalculationLatency() {
+        return calculation.getSnapshot();
+    }
+
+    @Override
+    public LatencySnapshot getCompileLatency() {
+        return compile.getSnapshot();
+    }
+
+    @Override
+    public LatencySnapshot getEvaluationLatency() {
+        return evaluation.getSnapshot();
+    }
+
+    @Override
+    public LatencySnapshot getPaintLatency() {
+        return paint.getSnapshot();
+    }
+
+    @Override
+    public LatencySnapshot getEncodeLatency() {
+        return encode.getSnapshot();
+    }
+
+    @Override
+    public long getCalculationCount() {
+        return calculations.get();
+    }
+
+    @Override
+    public long getFailedCalculationCount() {
+        return failedCalculations.get();
+    }
+
+    @Override
+    public long getCancelledCalculationCount() {
+        return cancelledCalculations.get();
+    }
+
+    @Override
+    public long getSampleCount() {
+        return samples.get();
+    }
+
+    @Override
+    public double getSamplesPerSecond() {
+        long nanos = evaluation.getSum();
+        return nanos > 0 ? samples.get() * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        CalculationCache cache = this.cache;
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        CalculationCache cache = this.cache;
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : new LatencyHistogram[]{queueWait, calculation, compile, evaluation, paint, encode})
+            histogram.reset();
+        calculations.set(0);
+        failedCalculations.set(0);
+        cancelledCalculations.set(0);
+        samples.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Metryki: obliczenia " + getCalculationCount() + " (błędy " + getFailedCalculationCount() + ", anulowane "
+                + getCancelledCalculationCount() + "), punkty " + getSampleCount() + " (" + Math.round(getSamplesPerSecond())
+                + "/s), pamięć podręczna " + getCacheHitCount() + "/" + getCacheMissCount()
+                + "\n  kolejka: " + getQueueWait() + "\n  obliczenie: " + getCalculationLatency()
+                + "\n  kompilacja: " + getCompileLatency() + "\n  punkty: " + getEvaluationLatency()
+                + "\n  rysowanie: " + getPaintLatency() + "\n  zapis: " + getEncodeLatency();
+    }
+}
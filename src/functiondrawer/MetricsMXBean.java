@@ -0,0 +1,60 @@
+package functiondrawer;
+
+/**
+ * Interfejs zarządzania metryk aplikacji, publikowany jako functiondrawer:type=Metrics w platformowym serwerze MBean.
+ * Interfejs jest publiczny, ponieważ wymaga tego JMX.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return - czas od zlecenia obliczenia do rozpoczęcia go przez wątek roboczy
+     */
+    LatencySnapshot getQueueWait();
+
+    /**
+     * @return - całkowity czas obliczenia zleconego przez interfejs użytkownika
+     */
+    LatencySnapshot getCalculationLatency();
+
+    /**
+     * @return - czas parsowania, optymalizacji i kompilacji wzoru
+     */
+    LatencySnapshot getCompileLatency();
+
+    /**
+     * @return - czas wyznaczania punktów po kompilacji wzoru
+     */
+    LatencySnapshot getEvaluationLatency();
+
+    /**
+     * @return - czas odświeżenia panelu z wykresem
+     */
+    LatencySnapshot getPaintLatency();
+
+    /**
+     * @return - czas zapisu obrazu do pliku
+     */
+    LatencySnapshot getEncodeLatency();
+
+    long getCalculationCount();
+
+    long getFailedCalculationCount();
+
+    long getCancelledCalculationCount();
+
+    long getSampleCount();
+
+    /**
+     * @return - ilość wyznaczonych punktów na sekundę czasu wyznaczania punktów
+     */
+    double getSamplesPerSecond();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    /**
+     * Zeruje wszystkie liczniki i histogramy
+     */
+    void reset();
+}
@@ -0,0 +1,118 @@
+package functiondrawer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Oblicza punkty funkcji równolegle na puli ForkJoinPool.
+ * Przedział zostaje podzielony na fragmenty, które zapisują wyniki bezpośrednio do wcześniej zaalokowanych tablic.
+ * Wartość x zależy wyłącznie od numeru kroku, a w razie błędu zgłaszany jest błąd najwcześniejszego fragmentu,
+ * więc wynik jest identyczny z obliczeniem sekwencyjnym. Postęp jest sumowany ze wszystkich fragmentów.
+ * Kilka funkcji jest liczonych na wspólnej siatce: fragment wyznacza wartości x raz i oblicza dla nich wszystkie funkcje.
+ */
+final class ParallelSampler {
+    private final static int CHUNK_SIZE = 4096;
+    private final Evaluator[] evaluators;
+    private final double startValue;
+    private final float step;
+    private final int sampleCount;
+    private final MathParser.ParserProgress parserProgress;
+    private final double[] xs;
+    private final double[][] ys;
+    private volatile int failedIndex = Integer.MAX_VALUE;
+    private ParserException error;
+    private int completed = 0, progress = 0;
+
+    /**
+     * @param evaluators - skompilowane wyrażenia, współdzielone przez wszystkie wątki
+     * @param startValue - wartość początkowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @param sampleCount - ilość punktów do obliczenia
+     * @param parserProgress - aktualny postęp operacji
+     */
+    ParallelSampler(Evaluator[] evaluators, double startValue, float step, int sampleCount, MathParser.ParserProgress parserProgress) {
+        this.evaluators = evaluators;
+        this.startValue = startValue;
+        this.step = step;
+        this.sampleCount = sampleCount;
+        this.parserProgress = parserProgress;
+        this.xs = new double[sampleCount];
+        this.ys = new double[evaluators.length][sampleCount];
+    }
+
+    /**
+     * Wykonuje obliczenie wszystkich fragmentów i czeka na ich zakończenie
+     * @return - serie punktów kolejnych funkcji, ze wspólną tablicą wartości x
+     */
+    SampleSeries[] sample() throws ParserException {
+        ForkJoinPool.commonPool().invoke(new Chunk(0, sampleCount));
+
+        if (error != null)
+            throw error;
+
+        return MathParser.toSeries(xs, ys);
+    }
+
+    /**
+     * Oblicza punkty od numeru from (włącznie) do numeru to (wyłącznie)
+     * Fragmenty leżące za punktem, w którym już wystąpił błąd, są pomijane
+     */
+    private void sampleRange(int from, int to) {
+        if (from > failedIndex)
+            return;
+
+        try {
+            MathParser.checkCancelled(parserProgress);
+            MathParser.sampleBlock(evaluators, startValue, step, xs, ys, from, to);
+
+        } catch (ParserException e) {
+            onError(from, e);
+            return;
+        }
+        onChunkFinished(to - from);
+    }
+
+    /**
+     * Zapamiętuje błąd, jeśli wystąpił dla wcześniejszego punktu niż dotychczas zgłoszony
+     */
+    private synchronized void onError(int index, ParserException exception) {
+        if (index < failedIndex) {
+            failedIndex = index;
+            error = exception;
+        }
+    }
+
+    /**
+     * Sumuje postęp fragmentów i przekazuje go dalej tylko gdy wzrośnie
+     */
+    private synchronized void onChunkFinished(int chunkSize) {
+        completed += chunkSize;
+        int actualProgress = MathParser.getPercentage(completed, sampleCount);
+
+        if (actualProgress > progress && parserProgress != null && actualProgress <= 100) {
+            progress = actualProgress;
+            parserProgress.onProgressChange(progress);
+        }
+    }
+
+    private final class Chunk extends RecursiveAction {
+        private final static long serialVersionUID = 1L;
+        private final int from, to;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                sampleRange(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunk(from, middle), new Chunk(middle, to));
+        }
+    }
+}
@@ -6,6 +6,7 @@ class ParserException extends Exception {
     final static int SQRT_PROBLEM = 2;
     final static int ZERO_DIVISION = 3;
     final static int MAX_REACHED = 4;
+    final static int CANCELLED = 5;
     private final int errorCode;
     private final String info;
 
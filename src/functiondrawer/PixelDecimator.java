@@ -0,0 +1,91 @@
+package functiondrawer;
+
+import java.util.Arrays;
+
+/**
+ * Redukcja serii punktów do rozdzielczości ekranu (metoda M4).
+ * Dla każdej kolumny pikseli zostają zachowane tylko cztery punkty: pierwszy, najmniejszy, największy i ostatni,
+ * oraz ewentualnie jeden punkt nieokreślony, który przerywa wykres.
+ * Łamana narysowana z tych punktów wygląda identycznie jak narysowana ze wszystkich punktów,
+ * a ilość odcinków zależy od szerokości panelu, a nie od ilości obliczonych punktów.
+ */
+final class PixelDecimator {
+
+    private PixelDecimator() {
+    }
+
+    /**
+     * Redukuje serię do co najwyżej pięciu punktów na kolumnę pikseli.
+     * Punkty leżące poza panelem trafiają do jednej kolumny po lewej i jednej po prawej stronie,
+     * dzięki czemu zachowany zostaje odcinek wchodzący w obszar rysowania.
+     * @param samples - seria punktów uporządkowana rosnąco względem x
+     * @param xOrigin - położenie x = 0 w pikselach
+     * @param xScale - ilość pikseli na jednostkę osi X
+     * @param width - szerokość obszaru rysowania w pikselach
+     * @return - zredukowana seria punktów
+     */
+    static SampleSeries reduce(SampleSeries samples, double xOrigin, double xScale, int width) {
+        if (samples.size() <= (width + 2) * 5)
+            return samples;
+
+        SampleSeries result = new SampleSeries((width + 2) * 5);
+        int columnStart = 0;
+        int column = getColumn(samples.getX(0), xOrigin, xScale, width);
+
+        for (int i = 1; i < samples.size(); i++) {
+            int actualColumn = getColumn(samples.getX(i), xOrigin, xScale, width);
+            if (actualColumn != column) {
+                addColumn(samples, columnStart, i, result);
+                columnStart = i;
+                column = actualColumn;
+            }
+        }
+        addColumn(samples, columnStart, samples.size(), result);
+
+        return result;
+    }
+
+    /**
+     * Zwraca numer kolumny pikseli, ograniczony do przedziału od -1 do width
+     */
+    private static int getColumn(double x, double xOrigin, double xScale, int width) {
+        double column = Math.floor(x * xScale + xOrigin);
+        return (int) Math.max(-1, Math.min(width, column));
+    }
+
+    /**
+     * Dodaje do wyniku punkt pierwszy, najmniejszy, największy i ostatni z punktów od from (włącznie) do to (wyłącznie),
+     * a także pierwszy punkt o nieokreślonej wartości, aby łamana została przerwana również po redukcji.
+     * Punkty są dodawane w kolejności serii, z pominięciem powtórzeń.
+     */
+    private static void addColumn(SampleSeries samples, int from, int to, SampleSeries result) {
+        int min = -1, max = -1, gap = -1;
+
+        for (int i = from; i < to; i++) {
+            double y = samples.getY(i);
+            if (Double.isNaN(y) || Double.isInfinite(y)) {
+                if (gap < 0)
+                    gap = i;
+            } else {
+                if (min < 0 || y < samples.getY(min))
+                    min = i;
+                if (max < 0 || y > samples.getY(max))
+                    max = i;
+            }
+        }
+
+        int[] indexes = {from, min, max, gap, to - 1};
+        Arrays.sort(indexes);
+
+        int previous = -1;
+        for (int index : indexes)
+            if (index > previous) {
+                addPoint(samples, index, result);
+                previous = index;
+            }
+    }
+
+    private static void addPoint(SampleSeries samples, int index, SampleSeries result) {
+        result.add(samples.getX(index), samples.getY(index));
+    }
+}
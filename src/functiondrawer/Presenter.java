@@ -1,7 +1,7 @@
 package functiondrawer;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,11 +9,19 @@ import java.util.List;
  * Zajmuje się przekazaniem odpowiednich komunikatów i wartości między nimi.
  *
  * Nie opisuję poszczególnych method, ponieważ są one jedynie interfejsami które przekazują informacje między modelem a widokiem
+ * Wpisany wzór może zawierać kilka funkcji oddzielonych średnikiem, które są rysowane na jednym wykresie.
+ * Prezenter pamięta wzory narysowanego wykresu, aby po przesunięciu lub przybliżeniu wykresu zlecić obliczenie widocznego
+ * fragmentu. Wynik takiego obliczenia zastępuje punkty i legendę wykresu bez dopasowywania widoku.
+ * Każde zlecenie jest oznaczone tablicą wzorów, dla której zostało wykonane. Dopóki nowy wykres nie zostanie narysowany,
+ * zmiany widoku starego wykresu są pomijane, a wynik, który nie należy ani do rysowanego, ani do narysowanego wykresu,
+ * zostaje odrzucony.
  */
 
 class Presenter implements View.UserAction, FunctionDrawer.PresenterInterface {
     private final View view;
     private final FunctionDrawer model;
+    private final static String FUNCTION_SEPARATOR = ";";
+    private String[] functions, pendingFunctions;
 
     Presenter(View view, FunctionDrawer model) {
         this.model = model;
@@ -34,20 +42,46 @@ class Presenter implements View.UserAction, FunctionDrawer.PresenterInterface {
     @Override
     public void onDrawButtonClick(String equalisation, int startValue, int endValue) {
         view.disableSaveButton();
-        view.disableDrawButton();
 
-        model.calculateFunction(equalisation, startValue, endValue);
+        String[] functions = splitFunctions(equalisation);
+        if (functions.length == 0) {
+            view.showError(Strings.enterFunctionWarning);
+            view.enableDrawButton();
+            return;
+        }
+
+        this.pendingFunctions = functions;
+        model.calculateFunctions(functions, startValue, endValue);
     }
 
     @Override
-    public void onCalculationSuccess(List<Point.Double> result) {
-        view.drawFunction(result);
+    public void onViewportChange(double startValue, double endValue) {
+        if (functions != null && pendingFunctions == null)
+            model.calculateFunctions(functions, startValue, endValue);
+    }
+
+    @Override
+    public void onCalculationSuccess(String[] functions, List<SampleSeries> result) {
+        if (functions == pendingFunctions) {
+            this.functions = functions;
+            this.pendingFunctions = null;
+            view.drawFunction(result, functions);
+        } else if (functions == this.functions && pendingFunctions == null)
+            view.updateFunction(result, functions);
+        else
+            return;
+
         view.enableSaveButton();
         view.enableDrawButton();
     }
 
     @Override
-    public void onCalculationError(String message) {
+    public void onCalculationError(String[] functions, String message) {
+        if (functions == pendingFunctions)
+            pendingFunctions = null;
+        else if (functions != this.functions || pendingFunctions != null)
+            return;
+
         view.showError(message);
         view.enableDrawButton();
         view.disableSaveButton();
@@ -57,4 +91,14 @@ class Presenter implements View.UserAction, FunctionDrawer.PresenterInterface {
     public void onCalculationProgressChange(int progress) {
         view.setProgress(progress);
     }
+
+    /**
+     * Dzieli wzór na funkcje oddzielone średnikiem, pomijając puste
+     */
+    static String[] splitFunctions(String equalisation) {
+        return Arrays.stream(equalisation.split(FUNCTION_SEPARATOR))
+                .map(String::trim)
+                .filter(function -> !function.isEmpty())
+                .toArray(String[]::new);
+    }
 }
@@ -0,0 +1,78 @@
+package functiondrawer;
+
+import javax.swing.*;
+
+/**
+ * Przekazuje postęp obliczenia z wątku roboczego do wątku Swing (EDT).
+ * Wątek roboczy jedynie zapisuje aktualny postęp w polu volatile, a licznik Swing co 1000 / MAX_UPDATES_PER_SECOND ms
+ * odczytuje go i, jeśli się zmienił, przekazuje słuchaczowi. Dzięki temu pętla obliczeń nie czeka na interfejs,
+ * a kolejne zmiany postępu między odczytami są łączone w jedną.
+ * Zakończenie obliczenia, sukces lub błąd, trafia do EDT przez SwingUtilities.invokeLater po zatrzymaniu licznika,
+ * więc słuchacz nie otrzyma postępu po wyniku. Obliczenie anulowane w międzyczasie nie przekazuje już niczego.
+ */
+final class ProgressPublisher implements MathParser.ParserProgress {
+    private final static int MAX_UPDATES_PER_SECOND = 20;
+    private final CalculationScheduler.Cancellation cancellation;
+    private final Listener listener;
+    private final Timer timer;
+    private volatile int progress = 0;
+    private int publishedProgress = 0;
+
+    /**
+     * @param cancellation - stan anulowania obliczenia
+     * @param listener - słuchacz postępu wywoływany w EDT
+     */
+    ProgressPublisher(CalculationScheduler.Cancellation cancellation, Listener listener) {
+        this.cancellation = cancellation;
+        this.listener = listener;
+        this.timer = new Timer(1000 / MAX_UPDATES_PER_SECOND, event -> publish());
+    }
+
+    /**
+     * Rozpoczyna okresowe przekazywanie postępu
+     */
+    void start() {
+        timer.start();
+    }
+
+    /**
+     * Zapisuje aktualny postęp, wywoływane przez wątek roboczy
+     * @param percentageProgress - postęp w procentach
+     */
+    @Override
+    public void onProgressChange(int percentageProgress) {
+        progress = percentageProgress;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancellation.isCancelled();
+    }
+
+    /**
+     * Zatrzymuje przekazywanie postępu i wykonuje w EDT zakończenie obliczenia, jeśli nie zostało ono anulowane
+     * @param completion - przekazanie wyniku lub błędu
+     */
+    void finish(Runnable completion) {
+        SwingUtilities.invokeLater(() -> {
+            timer.stop();
+            if (!cancellation.isCancelled())
+                completion.run();
+        });
+    }
+
+    private void publish() {
+        int actualProgress = progress;
+
+        if (cancellation.isCancelled())
+            timer.stop();
+        else if (actualProgress != publishedProgress) {
+            publishedProgress = actualProgress;
+            listener.onProgressChange(actualProgress);
+        }
+    }
+
+    interface Listener {
+        void onProgressChange(int progress);
+    }
+}
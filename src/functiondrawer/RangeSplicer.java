@@ -0,0 +1,65 @@
+package functiondrawer;
+
+/**
+ * Wyznaczanie serii punktów dla nowego przedziału na podstawie serii obliczonej wcześniej dla przedziału nakładającego się.
+ * Punkty z części wspólnej zostają przepisane bez obliczania, a obliczane są tylko brakujące fragmenty na lewo
+ * od pierwszego i na prawo od ostatniego zapamiętanego punktu leżącego w nowym przedziale.
+ * Poszerzenie przedziału z [-100, 100] do [-100, 120] wymaga więc obliczenia tylko punktów z [100, 120].
+ * Używane przy próbkowaniu adaptacyjnym, którego punkty nie leżą na siatce. Serie ze stałym krokiem są składane
+ * przez MathParser tak, aby wszystkie punkty leżały na siatce nowego przedziału.
+ */
+final class RangeSplicer {
+
+    private RangeSplicer() {
+    }
+
+    /**
+     * Składa serię punktów dla przedziału [startValue, endValue]
+     * @param previous - wcześniej obliczona, niepusta seria punktów tej samej funkcji
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param pieceSampler - oblicza punkty brakujących fragmentów
+     * @return - seria punktów uporządkowana rosnąco względem x
+     */
+    static SampleSeries splice(SampleSeries previous, double startValue, double endValue, PieceSampler pieceSampler) throws ParserException {
+        int first = 0, last = previous.size() - 1;
+        while (first <= last && previous.getX(first) < startValue)
+            first++;
+        while (last >= first && previous.getX(last) > endValue)
+            last--;
+
+        if (first > last)
+            return pieceSampler.sample(startValue, endValue);
+
+        double firstX = previous.getX(first), lastX = previous.getX(last);
+        SampleSeries left = startValue < firstX ? pieceSampler.sample(startValue, firstX) : null;
+        SampleSeries right = endValue > lastX ? pieceSampler.sample(lastX, endValue) : null;
+
+        SampleSeries result = new SampleSeries(last - first + 1 + (left != null ? left.size() : 0) + (right != null ? right.size() : 0));
+        if (left != null)
+            for (int i = 0; i < left.size() && left.getX(i) < firstX; i++)
+                result.add(left.getX(i), left.getY(i));
+
+        for (int i = first; i <= last; i++)
+            result.add(previous.getX(i), previous.getY(i));
+
+        if (right != null)
+            for (int i = 0; i < right.size(); i++)
+                if (right.getX(i) > lastX)
+                    result.add(right.getX(i), right.getY(i));
+
+        return result;
+    }
+
+    /**
+     * Oblicza punkty brakującego fragmentu przedziału
+     */
+    interface PieceSampler {
+        /**
+         * @param from - początek fragmentu
+         * @param to - koniec fragmentu
+         * @return - punkty z przedziału [from, to] uporządkowane rosnąco względem x
+         */
+        SampleSeries sample(double from, double to) throws ParserException;
+    }
+}
@@ -0,0 +1,211 @@
+package functiondrawer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Eksport punktów funkcji ze stałym krokiem do pliku CSV lub binarnego.
+ * Punkty są obliczane blokami po BLOCK_SIZE i od razu zapisywane przez bufor do FileChannel, więc pamięć zajmowana
+ * przy eksporcie nie zależy od ilości punktów - nie powstaje żadna seria ani lista punktów.
+ * Wartości x są wyznaczane z numeru kroku tak jak w MathParser, więc plik zawiera te same punkty co wykres.
+ *
+ * Format CSV: linia komentarza z nagłówkiem, linia "x,y" i po jednym punkcie w linii.
+ * Format binarny (little-endian): znacznik "FDS1", długość wzoru w bajtach (int) i wzór w UTF-8, wartość początkowa
+ * i końcowa (double), krok (float) i ilość punktów (long), a po nagłówku kolejne pary x, y (double).
+ *
+ * Użycie z linii poleceń: SampleExporter wzór początek koniec krok plik.csv|plik.bin
+ */
+public final class SampleExporter {
+    private final static int BLOCK_SIZE = 4096;
+    private final static int BUFFER_SIZE = 1 << 17;
+    private final static int MAX_CSV_LINE = 64;
+    private final static byte[] MAGIC = "FDS1".getBytes(StandardCharsets.US_ASCII);
+    private final FileChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long bytes = 0;
+
+    private SampleExporter(FileChannel channel, Format format) {
+        this.channel = channel;
+        this.format = format;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println(Strings.exportUsage);
+            System.exit(2);
+        }
+
+        try {
+            Path path = Paths.get(args[4]);
+            double startValue = Double.parseDouble(args[1]), endValue = Double.parseDouble(args[2]);
+            float step = Float.parseFloat(args[3]);
+            Evaluator evaluator = FunctionDrawer.createMathParser(null, false).createEvaluator(args[0]);
+
+            long start = System.nanoTime();
+            long bytes = export(evaluator, args[0], startValue, endValue, step, Format.fromPath(path), path, null);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long count = MathParser.getSampleCount(startValue, endValue, step);
+            System.out.println(String.format(Locale.ROOT, Strings.exportSummary, count, path, bytes, seconds, count / seconds));
+
+        } catch (NumberFormatException e) {
+            System.err.println(Strings.exportUsage);
+            System.exit(2);
+
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+
+        } catch (ParserException e) {
+            System.err.println(FunctionDrawer.getErrorMessage(e));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Oblicza punkty funkcji ze stałym krokiem i zapisuje je do pliku, blok po bloku.
+     * Ilość punktów jest liczona na typie long, więc nie jest ograniczona rozmiarem tablicy ani typem int.
+     * @param evaluator - skompilowane wyrażenie
+     * @param equalisation - wzór zapisywany w nagłówku
+     * @param startValue - wartość początkowa
+     * @param endValue - wartość końcowa
+     * @param step - krok co jaki wykonywane jest obliczenie
+     * @param format - format pliku
+     * @param path - plik wynikowy, zostaje nadpisany
+     * @param parserProgress - aktualny postęp operacji lub null
+     * @return - ilość zapisanych bajtów
+     * @throws IllegalArgumentException - jeśli koniec przedziału leży przed początkiem, krok nie jest dodatni
+     * lub przedział albo ilość punktów nie są skończone
+     */
+    static long export(Evaluator evaluator, String equalisation, double startValue, double endValue, float step,
+                       Format format, Path path, MathParser.ParserProgress parserProgress) throws ParserException, IOException {
+        double steps = (endValue - startValue) / step;
+        if (!(steps >= 0) || !(steps < Long.MAX_VALUE))
+            throw new IllegalArgumentException(Strings.exportRangeError);
+        long count = MathParser.getSampleCount(startValue, endValue, step);
+
+        try (FileChannel channel = openChannel(path)) {
+            SampleExporter exporter = new SampleExporter(channel, format);
+            exporter.writeHeader(equalisation, startValue, endValue, step, count);
+
+            double[] xs = new double[BLOCK_SIZE], ys = new double[BLOCK_SIZE];
+            int progress = 0;
+            for (long from = 0; from < count; from += BLOCK_SIZE) {
+                int size = (int) Math.min(BLOCK_SIZE, count - from);
+                MathParser.checkCancelled(parserProgress);
+
+                for (int i = 0; i < size; i++)
+                    xs[i] = MathParser.getSampleX(startValue, step, from + i);
+                evaluator.applyAsDouble(xs, ys, 0, size);
+                exporter.writeBlock(xs, ys, size);
+
+                int actualProgress = (int) ((from + size) * 100.0 / count);
+                if (parserProgress != null && actualProgress > progress)
+                    parserProgress.onProgressChange(actualProgress);
+                progress = actualProgress;
+            }
+
+            exporter.flush();
+            return exporter.bytes;
+        }
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Zapisuje nagłówek pliku. Wzór może być dłuższy niż bufor, więc jest zapisywany w częściach
+     */
+    private void writeHeader(String equalisation, double startValue, double endValue, float step, long count) throws IOException {
+        byte[] equalisationBytes = equalisation.getBytes(StandardCharsets.UTF_8);
+
+        if (format == Format.BINARY) {
+            buffer.put(MAGIC);
+            buffer.putInt(equalisationBytes.length);
+            put(equalisationBytes);
+            ensureRemaining(2 * Double.BYTES + Float.BYTES + Long.BYTES);
+            buffer.putDouble(startValue).putDouble(endValue).putFloat(step).putLong(count);
+
+        } else {
+            putAscii("# ");
+            put(equalisationBytes);
+            put(String.format(Locale.ROOT, "; start=%s; end=%s; step=%s; count=%d\nx,y\n", startValue, endValue, step, count)
+                    .getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Zapisuje tablicę bajtów dowolnej długości, opróżniając bufor do pliku za każdym razem, gdy się zapełni
+     */
+    private void put(byte[] bytes) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                flush();
+
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Opróżnia bufor do pliku, jeśli zostało w nim mniej niż podana ilość bajtów
+     */
+    private void ensureRemaining(int length) throws IOException {
+        if (buffer.remaining() < length)
+            flush();
+    }
+
+    /**
+     * Zapisuje blok punktów do bufora, opróżniając go do pliku, gdy brakuje w nim miejsca
+     */
+    private void writeBlock(double[] xs, double[] ys, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            if (format == Format.BINARY) {
+                ensureRemaining(2 * Double.BYTES);
+                buffer.putDouble(xs[i]).putDouble(ys[i]);
+
+            } else {
+                ensureRemaining(MAX_CSV_LINE);
+                putAscii(Double.toString(xs[i]));
+                buffer.put((byte) ',');
+                putAscii(Double.toString(ys[i]));
+                buffer.put((byte) '\n');
+            }
+        }
+    }
+
+    /**
+     * Zapisuje tekst złożony ze znaków ASCII bez tworzenia tablicy bajtów
+     */
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++)
+            buffer.put((byte) text.charAt(i));
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            bytes += channel.write(buffer);
+        buffer.clear();
+    }
+
+    enum Format {
+        CSV, BINARY;
+
+        /**
+         * @return - BINARY dla plików z rozszerzeniem .bin, w pozostałych przypadkach CSV
+         */
+        static Format fromPath(Path path) {
+            return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".bin") ? BINARY : CSV;
+        }
+    }
+}
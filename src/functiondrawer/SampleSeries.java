@@ -0,0 +1,127 @@
+package functiondrawer;
+
+import java.util.Arrays;
+
+/**
+ * Seria punktów funkcji przechowywana w dwóch równoległych tablicach typu double.
+ * Jeden punkt zajmuje 16 bajtów, a przeglądanie serii odbywa się po ciągłym obszarze pamięci.
+ */
+final class SampleSeries {
+    private final static int MIN_CAPACITY = 16;
+    private double[] xs, ys;
+    private int size;
+    private final Interval valueRange;
+
+    /**
+     * @param capacity - przewidywana ilość punktów
+     */
+    SampleSeries(int capacity) {
+        capacity = Math.max(capacity, MIN_CAPACITY);
+        xs = new double[capacity];
+        ys = new double[capacity];
+        valueRange = null;
+    }
+
+    /**
+     * Tworzy serię z gotowych, w pełni wypełnionych tablic
+     * @param xs - wartości x
+     * @param ys - wartości funkcji
+     */
+    SampleSeries(double[] xs, double[] ys) {
+        this(xs, ys, xs.length);
+    }
+
+    /**
+     * Tworzy serię z gotowych tablic, wypełnionych od początku podaną ilością punktów
+     * @param xs - wartości x
+     * @param ys - wartości funkcji
+     * @param size - ilość punktów
+     */
+    SampleSeries(double[] xs, double[] ys, int size) {
+        this(xs, ys, size, null);
+    }
+
+    private SampleSeries(double[] xs, double[] ys, int size, Interval valueRange) {
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+        this.valueRange = valueRange;
+    }
+
+    /**
+     * Dodaje punkt na koniec serii, w razie potrzeby powiększając tablice
+     * @param x - wartość x
+     * @param y - wartość funkcji
+     */
+    void add(double x, double y) {
+        if (size == xs.length)
+            grow();
+
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Dodaje na koniec serii wszystkie punkty innej serii
+     * @param other - dołączana seria
+     */
+    void addAll(SampleSeries other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.xs, 0, xs, size, other.size);
+        System.arraycopy(other.ys, 0, ys, size, other.size);
+        size += other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    double getX(int index) {
+        return xs[index];
+    }
+
+    double getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * @return - ograniczenie wartości funkcji wyznaczone arytmetyką przedziałową przed próbkowaniem
+     * lub null, jeśli nie zostało wyznaczone
+     */
+    Interval getValueRange() {
+        return valueRange;
+    }
+
+    /**
+     * Zwraca serię z tymi samymi punktami i podanym zakresem wartości, bez kopiowania tablic.
+     * Seria może być już zapisana w pamięci podręcznej lub współdzielić tablice z innymi seriami, więc nie jest zmieniana.
+     * @param valueRange - ograniczenie wartości funkcji lub null
+     */
+    SampleSeries withValueRange(Interval valueRange) {
+        return new SampleSeries(xs, ys, size, valueRange);
+    }
+
+    /**
+     * @return - przybliżony rozmiar serii w pamięci w bajtach, liczony z pojemności tablic
+     */
+    long getFootprint() {
+        return 2 * (16 + 8L * xs.length) + 24;
+    }
+
+    private void grow() {
+        ensureCapacity(xs.length + (xs.length >> 1));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > xs.length) {
+            capacity = Math.max(capacity, MIN_CAPACITY);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+    }
+}
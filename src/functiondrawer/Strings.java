@@ -30,8 +30,16 @@ class Strings {
     final static String zeroDivisionWarning = "Wykryto dzielenie przez zero.";
     final static String unableToFinishCalculation = "Wystąpił problem podczas wykonywania obliczenia";
     final static String onlyInteger = "Tylko liczba całkowita";
+    final static String batchJobFormat = "oczekiwano: początek koniec szerokość wysokość plik wzór";
+    final static String batchJobError = "Zadanie w linii %d: %s";
+    final static String batchSummary = "Wykresy: %d, błędy: %d, wątki: %d, czas: %.2f s, %.1f wykresów/s, "
+            + "punkty: %d, %.0f punktów/s, średnio %.1f ms na wykres";
+    final static String exportUsage = "Użycie: SampleExporter wzór początek koniec krok plik.csv|plik.bin";
+    final static String exportRangeError = "Koniec przedziału nie może leżeć przed początkiem, a krok musi być dodatni";
+    final static String exportSummary = "Zapisano %d punktów do %s (%d B) w %.2f s, %.0f punktów/s";
 
     final static String help = "<html><p><strong>Dostępne funkcje:</strong></p>\n" +
             "<p><strong>+</strong> &nbsp;dodawanie<br /><strong>-</strong> &nbsp;odejmowanie<br /><strong>*</strong> &nbsp;mnożenie<br /><strong>/</strong> &nbsp;dzielenie<br /><strong>^n</strong> &nbsp;potęgowanie do wykładnika n<br /><strong>sqrt(wartość)</strong> &nbsp;pierwiatek<br /><strong>log(wartość)</strong> &nbsp;logarytm&nbsp;<br /><strong>sin(wartość)</strong> sinus&nbsp;<br /><strong>cos(wartość)</strong> cosinus<br /><strong>tan(wartość)</strong> tangens</p>\n" +
+            "<p><strong>;</strong> &nbsp;oddziela funkcje rysowane na jednym wykresie, np. sin(x); cos(x)</p>\n" +
             "<p style=\"text-align: left; padding-left: 120px;\">Wykonał <em><strong>Maciej Sady</strong></em></p></html>";
 }
@@ -48,8 +48,12 @@ class View {
         drawingPanel.setMessage(message);
     }
 
-    void drawFunction(List<Point.Double> pointList) {
-        drawingPanel.setFunctionPoints(pointList);
+    void drawFunction(List<SampleSeries> samples, String[] functions) {
+        drawingPanel.setFunctionPoints(samples, functions);
+    }
+
+    void updateFunction(List<SampleSeries> samples, String[] functions) {
+        drawingPanel.updateFunctionPoints(samples, functions);
     }
 
     void enableSaveButton() {
@@ -60,10 +64,6 @@ class View {
         btnSave.setEnabled(false);
     }
 
-    void disableDrawButton() {
-        btnDraw.setEnabled(false);
-    }
-
     void enableDrawButton() {
         btnDraw.setEnabled(true);
         btnDraw.setText(Strings.drawButton);
@@ -224,7 +224,7 @@ class View {
 
 
     /**
-     * Metoda ustawia nasłuchiwanie naciśnięcia przycisków
+     * Metoda ustawia nasłuchiwanie naciśnięcia przycisków oraz zmiany widoku wykresu
      */
     private void setListeners() {
         btnDraw.addActionListener(arg0 -> {
@@ -239,6 +239,11 @@ class View {
                 userAction.onSaveButtonClick(drawingPanel.getBufferedGraphic());
             }
         });
+
+        drawingPanel.setViewportListener(viewport -> {
+            if (userAction != null)
+                userAction.onViewportChange(viewport.getXMin(), viewport.getXMax());
+        });
     }
 
     private void setDrawingPanel() {
@@ -298,5 +303,7 @@ class View {
         void onDrawButtonClick(String equalisation, int startValue, int endValue);
 
         void onSaveButtonClick(BufferedImage image);
+
+        void onViewportChange(double startValue, double endValue);
     }
 }
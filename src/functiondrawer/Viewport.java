@@ -0,0 +1,110 @@
+package functiondrawer;
+
+/**
+ * Widoczny fragment układu współrzędnych: zakres wartości x i y wyświetlany na panelu.
+ * Zakresy mogą być ułamkowe i niesymetryczne względem zera. Obiekt jest niezmienny, przesunięcie i przybliżenie
+ * zwracają nowy widok, więc może być bez synchronizacji przekazywany do wątku obliczeń.
+ */
+final class Viewport {
+    private final double xMin, xMax, yMin, yMax;
+
+    /**
+     * @param xMin - najmniejsza widoczna wartość x
+     * @param xMax - największa widoczna wartość x
+     * @param yMin - najmniejsza widoczna wartość y
+     * @param yMax - największa widoczna wartość y
+     */
+    Viewport(double xMin, double xMax, double yMin, double yMax) {
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+    }
+
+    /**
+     * Tworzy widok symetryczny względem zera, w którym zakres [-biggest, biggest] każdej osi zajmuje
+     * całą szerokość lub wysokość panelu poza marginesem
+     * @param biggestX - największa wartość bezwzględna x
+     * @param biggestY - największa wartość bezwzględna y
+     * @param margin - margines jako ułamek zakresu, rozłożony po równo na obie strony
+     */
+    static Viewport fit(double biggestX, double biggestY, float margin) {
+        double halfWidth = biggestX * (1 + margin / 2), halfHeight = biggestY * (1 + margin / 2);
+        return new Viewport(-halfWidth, halfWidth, -halfHeight, halfHeight);
+    }
+
+    double getXMin() {
+        return xMin;
+    }
+
+    double getXMax() {
+        return xMax;
+    }
+
+    double getYMin() {
+        return yMin;
+    }
+
+    double getYMax() {
+        return yMax;
+    }
+
+    /**
+     * @return - ilość pikseli na jednostkę osi X
+     */
+    double getXScale(int width) {
+        return width / (xMax - xMin);
+    }
+
+    /**
+     * @return - ilość pikseli na jednostkę osi Y
+     */
+    double getYScale(int height) {
+        return height / (yMax - yMin);
+    }
+
+    /**
+     * Zamienia wartość x na położenie w pikselach, licząc od lewej krawędzi panelu
+     */
+    double toPixelX(double x, int width) {
+        return (x - xMin) * getXScale(width);
+    }
+
+    /**
+     * Zamienia wartość y na położenie w pikselach, licząc od górnej krawędzi panelu
+     */
+    double toPixelY(double y, int height) {
+        return (yMax - y) * getYScale(height);
+    }
+
+    /**
+     * Przesuwa widok tak, aby punkt pod kursorem podążał za nim
+     * @param dx - przesunięcie kursora w poziomie w pikselach
+     * @param dy - przesunięcie kursora w pionie w pikselach
+     * @param width - szerokość panelu
+     * @param height - wysokość panelu
+     */
+    Viewport pan(int dx, int dy, int width, int height) {
+        double xShift = dx / getXScale(width), yShift = dy / getYScale(height);
+        return new Viewport(xMin - xShift, xMax - xShift, yMin + yShift, yMax + yShift);
+    }
+
+    /**
+     * Zmienia skalę widoku, pozostawiając punkt pod kursorem w tym samym miejscu panelu
+     * @param factor - mnożnik zakresu, wartość mniejsza od 1 przybliża, a większa oddala widok
+     * @param x - położenie kursora w poziomie w pikselach
+     * @param y - położenie kursora w pionie w pikselach
+     * @param width - szerokość panelu
+     * @param height - wysokość panelu
+     */
+    Viewport zoom(double factor, int x, int y, int width, int height) {
+        double anchorX = xMin + x / getXScale(width), anchorY = yMax - y / getYScale(height);
+        return new Viewport(anchorX - (anchorX - xMin) * factor, anchorX + (xMax - anchorX) * factor,
+                anchorY - (anchorY - yMin) * factor, anchorY + (yMax - anchorY) * factor);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + xMin + ", " + xMax + "] x [" + yMin + ", " + yMax + "]";
+    }
+}
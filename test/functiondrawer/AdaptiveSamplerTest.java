@@ -0,0 +1,58 @@
+package functiondrawer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveSamplerTest {
+    /**
+     * Ilość punktów początkowego podziału z zapasem na zagęszczenie przy granicy zakresu
+     */
+    private final static int MAX_POINTS = 2000;
+
+    @Test
+    void pointCountStaysSmallWhenValuesExceedPolicyRange() throws ParserException {
+        assertTrue(sample("2^x", -100, 100).size() < MAX_POINTS);
+        assertTrue(sample("x^2", -10000, 10000).size() < MAX_POINTS);
+        assertTrue(sample("x^3", -10000, 10000).size() < MAX_POINTS);
+    }
+
+    @Test
+    void xValuesStrictlyIncrease() throws ParserException {
+        for (String function : new String[]{"x^3", "1/x", "tan(x)", "sin(1/x)"}) {
+            SampleSeries series = sample(function, -1000, 1000);
+            for (int i = 1; i < series.size(); i++)
+                assertTrue(series.getX(i) > series.getX(i - 1), function + " w punkcie " + i);
+        }
+    }
+
+    @Test
+    void valueRangeStaysWithinPolicyRange() throws ParserException {
+        Interval valueRange = sample("2^x", -100, 100).getValueRange();
+
+        assertNotNull(valueRange);
+        assertTrue(valueRange.getMagnitude() < EvaluationPolicy.MAX_VALUE);
+        assertEquals(51.2, sample("1/x", -10, 10).getValueRange().getMagnitude(), 1e-9);
+    }
+
+    /**
+     * Pik jest szukany, aż wartość zbliży się do ograniczenia na SPIKE_FACTOR progów, czyli tutaj 10 * 0.001 * 10
+     */
+    @Test
+    void narrowSpikeIsFound() throws ParserException {
+        SampleSeries series = sample("5*sin(x)+1/(1+(1000000*(x-0.13))^2)", -10, 10);
+
+        double peak = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < series.size(); i++)
+            if (Math.abs(series.getX(i) - 0.13) < 0.01)
+                peak = Math.max(peak, series.getY(i));
+
+        assertEquals(5 * Math.sin(0.13) + 1, peak, 0.1);
+    }
+
+    private static SampleSeries sample(String function, double startValue, double endValue) throws ParserException {
+        MathParser mathParser = new MathParser();
+        mathParser.setEvaluationPolicy(EvaluationPolicy.GAPS);
+        return mathParser.parseAndGetResult(function, startValue, endValue, FunctionDrawer.createAdaptiveSampler(false), null);
+    }
+}
@@ -0,0 +1,103 @@
+package functiondrawer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationPolicyTest {
+    private final static EvaluationPolicy CLAMPS = new EvaluationPolicy(EvaluationPolicy.Action.CLAMP,
+            EvaluationPolicy.Action.CLAMP, EvaluationPolicy.Action.CLAMP);
+
+    @Test
+    void gapReplacesEveryCauseWithNaN() throws ParserException {
+        assertEquals(Double.NaN, evaluate(EvaluationPolicy.GAPS, "1/x", 0));
+        assertEquals(Double.NaN, evaluate(EvaluationPolicy.GAPS, "sqrt(x)", -1));
+        assertEquals(Double.NaN, evaluate(EvaluationPolicy.GAPS, "x^3", 1000));
+        assertEquals(1000, evaluate(EvaluationPolicy.GAPS, "x^3", 10));
+    }
+
+    /**
+     * Ograniczane są tylko wartości skończone, a nieskończoność i NaN zostają przerwą, a nie fałszywym zerem
+     */
+    @Test
+    void clampLimitsOnlyFiniteOverflow() throws ParserException {
+        assertEquals(EvaluationPolicy.MAX_VALUE, evaluate(CLAMPS, "x^3", 1000));
+        assertEquals(-EvaluationPolicy.MAX_VALUE, evaluate(CLAMPS, "x^3", -1000));
+        assertEquals(Double.NaN, evaluate(CLAMPS, "2^x", 2000));
+        assertEquals(Double.NaN, evaluate(CLAMPS, "1/x", 0));
+        assertEquals(Double.NaN, evaluate(CLAMPS, "sqrt(x)", -1));
+        assertEquals(1000, evaluate(CLAMPS, "x^3", 10));
+    }
+
+    @Test
+    void clampAppliesToBlocks() throws ParserException {
+        double[] xs = {-1000, -1, 0, 10, 1000}, ys = new double[xs.length];
+        createEvaluator(CLAMPS, "x^3+sqrt(x)/x").applyAsDouble(xs, ys, 0, xs.length);
+
+        assertArrayEquals(new double[]{Double.NaN, Double.NaN, Double.NaN, 1000 + Math.sqrt(10) / 10, EvaluationPolicy.MAX_VALUE}, ys);
+    }
+
+    @Test
+    void abortReportsEveryCause() {
+        assertErrorCode(ParserException.ZERO_DIVISION, EvaluationPolicy.DEFAULT, "1/x", 0);
+        assertErrorCode(ParserException.SQRT_PROBLEM, EvaluationPolicy.DEFAULT, "sqrt(x)", -4);
+        assertErrorCode(ParserException.MAX_REACHED, EvaluationPolicy.DEFAULT, "x^3", 1000);
+        assertErrorCode(ParserException.MAX_REACHED, EvaluationPolicy.DEFAULT, "x^5", 26);
+    }
+
+    /**
+     * NaN bez dzielenia przez zero i pierwiastka z liczby ujemnej, np. logarytm liczby ujemnej, zawsze jest przerwą
+     */
+    @Test
+    void abortKeepsOtherUndefinedValuesAsGaps() throws ParserException {
+        assertEquals(Double.NaN, evaluate(EvaluationPolicy.DEFAULT, "log(x)", -1));
+    }
+
+    @Test
+    void eachCauseUsesItsOwnAction() throws ParserException {
+        EvaluationPolicy policy = new EvaluationPolicy(EvaluationPolicy.Action.ABORT, EvaluationPolicy.Action.GAP,
+                EvaluationPolicy.Action.CLAMP);
+
+        assertErrorCode(ParserException.ZERO_DIVISION, policy, "1/x", 0);
+        assertEquals(Double.NaN, evaluate(policy, "sqrt(x)", -1));
+        assertEquals(EvaluationPolicy.MAX_VALUE, evaluate(policy, "x^3", 1000));
+    }
+
+    @Test
+    void findCauseBlamesInnermostThenLeftmostFailingNode() throws ParserException {
+        assertEquals(ParserException.ZERO_DIVISION, findCause("1/(x-x)+sqrt(x)", -1));
+        assertEquals(ParserException.SQRT_PROBLEM, findCause("sqrt(x)+1/(x-x)", -1));
+        assertEquals(ParserException.ZERO_DIVISION, findCause("sqrt(x/(x+1))", -1));
+        assertNull(EvaluationPolicy.findCause(new MathParser().compile("log(x)"), -1));
+    }
+
+    /**
+     * Wspólne podwyrażenie jest liczone przed resztą wzoru, ale sprawdzane w miejscu pierwszego użycia
+     */
+    @Test
+    void findCauseDoesNotDependOnSharedSubexpressions() throws ParserException {
+        String equalisation = "sqrt(x)+1/(x-x)*(1/(x-x))";
+        assertInstanceOf(Expression.Shared.class, new MathParser().compile(equalisation));
+
+        assertEquals(ParserException.SQRT_PROBLEM, findCause(equalisation, -1));
+    }
+
+    private static int findCause(String equalisation, double x) throws ParserException {
+        return EvaluationPolicy.findCause(new MathParser().compile(equalisation), x).getErrorCode();
+    }
+
+    private static void assertErrorCode(int errorCode, EvaluationPolicy policy, String equalisation, double x) {
+        ParserException exception = assertThrows(ParserException.class, () -> evaluate(policy, equalisation, x));
+        assertEquals(errorCode, exception.getErrorCode(), equalisation + " dla x = " + x);
+    }
+
+    private static double evaluate(EvaluationPolicy policy, String equalisation, double x) throws ParserException {
+        return createEvaluator(policy, equalisation).applyAsDouble(x);
+    }
+
+    private static Evaluator createEvaluator(EvaluationPolicy policy, String equalisation) throws ParserException {
+        MathParser mathParser = new MathParser();
+        mathParser.setEvaluationPolicy(policy);
+        return mathParser.createEvaluator(equalisation);
+    }
+}
@@ -0,0 +1,97 @@
+package functiondrawer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+    private final static String[] FORMULAS = {
+            "x", "-x+3", "2*x^3-x^2/4+7", "sin(x)*cos(x)+tan(x/3)", "sqrt(x)+log(x)", "1/x+1/(x-1)",
+            "sin(x)^2+sin(x)^2*x", "(x+1)*(x+1)/(x+1)", "x^x", "2^(x/50)-log(sqrt(x^2+1))"
+    };
+
+    /**
+     * Wszystkie backendy liczą według IEEE 754 w tej samej kolejności działań, więc dają identyczne wyniki,
+     * także NaN i nieskończoność poza dziedziną, dla pojedynczych punktów i bloków dłuższych niż blok BatchEvaluator
+     */
+    @Test
+    void backendsGiveIdenticalResults() throws ParserException {
+        double[] xs = createPoints();
+
+        for (String formula : FORMULAS) {
+            Expression expression = new MathParser().compile(formula);
+            double[] expected = evaluate(Evaluator.Backend.INTERPRETER.create(expression), xs);
+
+            for (Evaluator.Backend backend : Evaluator.Backend.values()) {
+                Evaluator evaluator = backend.create(expression);
+                assertArrayEquals(expected, evaluate(evaluator, xs), formula + " " + backend);
+
+                for (int i = 0; i < xs.length; i++)
+                    assertEquals(expected[i], evaluator.applyAsDouble(xs[i]), formula + " " + backend + " dla x = " + xs[i]);
+            }
+        }
+    }
+
+    /**
+     * Bufory BatchEvaluator są osobne dla każdego wątku, więc jeden evaluator może liczyć kilka bloków naraz
+     */
+    @Test
+    void batchEvaluatorCanBeSharedBetweenThreads() throws Exception {
+        double[] xs = createPoints();
+        Expression expression = new MathParser().compile(FORMULAS[FORMULAS.length - 1]);
+        Evaluator evaluator = Evaluator.Backend.BATCH.create(expression);
+        double[] expected = evaluate(Evaluator.Backend.INTERPRETER.create(expression), xs);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++)
+                futures[i] = executor.submit(() -> {
+                    for (int repeat = 0; repeat < 50; repeat++)
+                        assertArrayEquals(expected, evaluate(evaluator, xs));
+                    return null;
+                });
+
+            for (Future<?> future : futures)
+                getResult(future);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Punkty od -500 do 500 z krokiem 0.75, z zerem, jedynką i wartościami, dla których funkcje nie są określone
+     */
+    private static double[] createPoints() {
+        double[] xs = new double[1337];
+        for (int i = 0; i < xs.length - 4; i++)
+            xs[i] = -500 + i * 0.75;
+
+        xs[xs.length - 4] = 0;
+        xs[xs.length - 3] = 1;
+        xs[xs.length - 2] = Double.POSITIVE_INFINITY;
+        xs[xs.length - 1] = Double.NaN;
+        return xs;
+    }
+
+    private static double[] evaluate(Evaluator evaluator, double[] xs) throws ParserException {
+        double[] ys = new double[xs.length];
+        evaluator.applyAsDouble(xs, ys, 0, xs.length);
+        return ys;
+    }
+
+    private static void getResult(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package functiondrawer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionOptimizerTest {
+    private final static double TOLERANCE = 1e-12;
+    private final static String[] FORMULAS = {
+            "x^2", "x^3-x^5", "(x+1)^8", "(-x)^4", "x^2.5", "x^0+x^1", "sqrt(x)^2",
+            "x/4", "x/3-x/0.1", "1/x/7", "x/0", "(x-2)/(2-2)",
+            "2*3+x", "x*2*3", "2^10*x", "sin(0)+cos(0)*x", "log(0)+x", "sqrt(0-1)*x", "-(-x)", "0-x", "x+0", "x*1/1",
+            "sin(x)^2+sin(x)*cos(x)+cos(x)^2", "sqrt(x)+1/sqrt(x)", "(x^2+1)/(x^2+1)", "log(x^2)*x^2-tan(x^2)"
+    };
+
+    /**
+     * Zoptymalizowane drzewo daje te same wartości co drzewo bez optymalizacji, z dokładnością do zaokrągleń
+     * mnożenia zamiast potęgowania i mnożenia przez odwrotność zamiast dzielenia, a NaN i nieskończoności
+     * pozostają w tych samych punktach
+     */
+    @Test
+    void optimizedTreeGivesTheSameValues() throws ParserException {
+        double[] xs = {Double.NEGATIVE_INFINITY, -1e100, -123.456, -2, -1, -0.5, -0.0, 0, 1e-3, 0.5, 1, 2, 3, 17.25, 1e5,
+                1e100, Double.POSITIVE_INFINITY, Double.NaN};
+
+        for (String formula : FORMULAS) {
+            Expression optimized = compile(formula, true), original = compile(formula, false);
+
+            for (double x : xs)
+                assertSameValue(original.evaluate(x), optimized.evaluate(x), formula + " dla x = " + x);
+        }
+    }
+
+    /**
+     * Ograniczenie wartości zoptymalizowanego drzewa zawiera wszystkie wartości drzewa bez optymalizacji
+     */
+    @Test
+    void optimizedBoundsContainOriginalValues() throws ParserException {
+        for (String formula : FORMULAS) {
+            Expression optimized = compile(formula, true), original = compile(formula, false);
+
+            for (double from = -8; from < 8; from += 1.5) {
+                Interval bounds = optimized.applyAsInterval(from, from + 1.5);
+                if (!bounds.isBounded() || bounds.isUndefined())
+                    continue;
+
+                for (double x = from; x <= from + 1.5; x += 0.01) {
+                    double y = original.evaluate(x), tolerance = TOLERANCE * Math.max(1, Math.abs(y));
+                    assertTrue(y >= bounds.getMin() - tolerance && y <= bounds.getMax() + tolerance,
+                            formula + " dla x = " + x + ": " + y + " poza " + bounds);
+                }
+            }
+        }
+    }
+
+    @Test
+    void smallPowersBecomeMultiplications() throws ParserException {
+        Expression expression = ExpressionOptimizer.optimize(compile("x^3", false));
+
+        assertOperation('*', expression);
+        assertOperation('*', ((Expression.Operation) expression).left);
+        assertOperation('^', ExpressionOptimizer.optimize(compile("x^9", false)));
+        assertOperation('^', ExpressionOptimizer.optimize(compile("x^2.5", false)));
+    }
+
+    @Test
+    void divisionByConstantBecomesMultiplicationByReciprocal() throws ParserException {
+        Expression expression = ExpressionOptimizer.optimize(compile("x/4", false));
+
+        assertOperation('*', expression);
+        assertEquals(0.25, ((Expression.Constant) ((Expression.Operation) expression).right).value);
+        assertOperation('/', ExpressionOptimizer.optimize(compile("x/0", false)));
+    }
+
+    /**
+     * Stałe są obliczane przed próbkowaniem, ale tylko gdy wynik jest skończony, aby EvaluationPolicy nadal
+     * rozpoznawała dzielenie przez zero i pierwiastek z liczby ujemnej
+     */
+    @Test
+    void onlyFiniteConstantsAreFolded() throws ParserException {
+        Expression folded = ExpressionOptimizer.optimize(compile("2*3+4^2", false));
+        assertInstanceOf(Expression.Constant.class, folded);
+        assertEquals(22, ((Expression.Constant) folded).value);
+
+        Expression multiplied = ExpressionOptimizer.optimize(compile("x*2*3", false));
+        assertOperation('*', multiplied);
+        assertEquals(6, ((Expression.Constant) ((Expression.Operation) multiplied).right).value);
+
+        assertOperation('/', ExpressionOptimizer.optimize(compile("1/0", false)));
+        assertEquals(ParserException.ZERO_DIVISION, EvaluationPolicy.findCause(compile("1/0+x", true), 1).getErrorCode());
+        assertEquals(ParserException.SQRT_PROBLEM, EvaluationPolicy.findCause(compile("sqrt(0-1)*x", true), 1).getErrorCode());
+    }
+
+    /**
+     * Powtórzone podwyrażenia trafiają do slotów, a każdy backend liczy wyrażenie ze slotami tak samo jak drzewo bez nich
+     */
+    @Test
+    void repeatedSubexpressionsAreSharedSlots() throws ParserException {
+        Expression expression = compile("sin(x)^2+sin(x)*cos(x)+cos(x)^2", true);
+        assertInstanceOf(Expression.Shared.class, expression);
+        assertEquals(2, ((Expression.Shared) expression).definitions.length);
+
+        Expression original = compile("sin(x)^2+sin(x)*cos(x)+cos(x)^2", false);
+        double[] xs = new double[1000], expected = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = -50 + i * 0.1;
+            expected[i] = original.evaluate(xs[i]);
+        }
+
+        for (Evaluator.Backend backend : Evaluator.Backend.values()) {
+            double[] ys = new double[xs.length];
+            backend.create(expression).applyAsDouble(xs, ys, 0, xs.length);
+            for (int i = 0; i < xs.length; i++)
+                assertSameValue(expected[i], ys[i], backend + " dla x = " + xs[i]);
+        }
+    }
+
+    private static void assertSameValue(double expected, double actual, String message) {
+        if (Double.isFinite(expected) && Double.isFinite(actual))
+            assertEquals(expected, actual, TOLERANCE * Math.max(1, Math.abs(expected)), message);
+        else
+            assertEquals(expected, actual, message);
+    }
+
+    private static void assertOperation(char operator, Expression expression) {
+        assertInstanceOf(Expression.Operation.class, expression);
+        assertEquals(operator, ((Expression.Operation) expression).operator);
+    }
+
+    private static Expression compile(String equalisation, boolean optimization) throws ParserException {
+        MathParser mathParser = new MathParser();
+        mathParser.setOptimization(optimization);
+        return mathParser.compile(equalisation);
+    }
+}
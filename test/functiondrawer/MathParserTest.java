@@ -0,0 +1,111 @@
+package functiondrawer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MathParserTest {
+    private final static double[] XS = {-2.5, -0.5, 0.25, 1, 3.75};
+
+    /**
+     * Argument funkcji zapisany bez nawiasów, działający, gdy x był podstawiany do wzoru jako tekst
+     */
+    @Test
+    void implicitArgumentEqualsParenthesisedArgument() throws ParserException {
+        String[][] formulas = {
+                {"sinx", "sin(x)"},
+                {"cosx", "cos(x)"},
+                {"tanx", "tan(x)"},
+                {"logx", "log(x)"},
+                {"sqrtx", "sqrt(x)"},
+                {"sinx^2", "sin(x)^2"},
+                {"sinx+cosx", "sin(x)+cos(x)"},
+                {"3*sqrtx*x", "3*sqrt(x)*x"},
+                {"sin-x", "sin(-x)"},
+                {"sin2x", "sin(2)*x"}
+        };
+
+        for (String[] formula : formulas) {
+            Evaluator implicit = createEvaluator(formula[0]), explicit = createEvaluator(formula[1]);
+            for (double x : XS)
+                assertEquals(explicit.applyAsDouble(x), implicit.applyAsDouble(x), formula[0] + " dla x = " + x);
+        }
+    }
+
+    @Test
+    void unknownFunctionIsReportedByName() {
+        ParserException exception = assertThrows(ParserException.class, () -> new MathParser().createEvaluator("foox"));
+
+        assertEquals(ParserException.UNKNOWN_FUNCTION, exception.getErrorCode());
+        assertEquals("foox", exception.getInfo());
+    }
+
+    /**
+     * Parsery z różnymi politykami dzielące pamięć podręczną nie mogą dostać serii obliczonej z inną polityką
+     */
+    @Test
+    void cachedSeriesDependOnEvaluationPolicy() throws ParserException {
+        CalculationCache cache = new CalculationCache(1 << 20);
+        MathParser gaps = new MathParser(), clamps = new MathParser();
+        gaps.setEvaluationPolicy(EvaluationPolicy.GAPS);
+        clamps.setEvaluationPolicy(new EvaluationPolicy(EvaluationPolicy.Action.CLAMP, EvaluationPolicy.Action.CLAMP,
+                EvaluationPolicy.Action.CLAMP));
+        gaps.setCache(cache);
+        clamps.setCache(cache);
+
+        SampleSeries gapped = gaps.parseAndGetResult("x^3", 0, 400, 1, null);
+        SampleSeries clamped = clamps.parseAndGetResult("x^3", 0, 400, 1, null);
+
+        assertEquals(Double.NaN, gapped.getY(gapped.size() - 1));
+        assertEquals(EvaluationPolicy.MAX_VALUE, clamped.getY(clamped.size() - 1));
+        assertSame(gapped, gaps.parseAndGetResult("x^3", 0, 400, 1, null));
+        assertNotNull(gapped.getValueRange());
+    }
+
+    /**
+     * Seria złożona z zapamiętanej serii ma dokładnie te same punkty co seria obliczona od nowa, także gdy zapamiętany
+     * przedział nie leży na siatce nowego przedziału, a postęp obu brakujących fragmentów rośnie do 100%
+     */
+    @Test
+    void splicedSeriesLieOnTheGridOfTheNewRange() throws ParserException {
+        double[][] ranges = {{10, 120}, {-20.25, 60}, {-30, 130}, {200, 300}};
+
+        for (double[] range : ranges) {
+            MathParser cached = new MathParser();
+            cached.setEvaluationPolicy(EvaluationPolicy.GAPS);
+            cached.setCache(new CalculationCache(1 << 20));
+            cached.parseAndGetResult("sin(x)*x", 0, 100, 0.5f, null);
+
+            List<Integer> progress = new ArrayList<>();
+            SampleSeries spliced = cached.parseAndGetResult("sin(x)*x", range[0], range[1], 0.5f, progress::add);
+            SampleSeries expected = createParser().parseAndGetResult("sin(x)*x", range[0], range[1], 0.5f, null);
+
+            assertEquals(expected.size(), spliced.size(), Arrays.toString(range));
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getX(i), spliced.getX(i), Arrays.toString(range) + " punkt " + i);
+                assertEquals(expected.getY(i), spliced.getY(i), Arrays.toString(range) + " punkt " + i);
+            }
+
+            assertEquals(100, progress.get(progress.size() - 1), Arrays.toString(range));
+            for (int i = 1; i < progress.size(); i++)
+                assertTrue(progress.get(i) > progress.get(i - 1), Arrays.toString(range) + " postęp " + progress);
+        }
+    }
+
+    /**
+     * Punkty spoza dziedziny, np. sqrtx dla ujemnych x, przerywają wykres zamiast zgłaszać błąd, aby porównać oba zapisy
+     */
+    private static Evaluator createEvaluator(String equalisation) throws ParserException {
+        return createParser().createEvaluator(equalisation);
+    }
+
+    private static MathParser createParser() {
+        MathParser mathParser = new MathParser();
+        mathParser.setEvaluationPolicy(EvaluationPolicy.GAPS);
+        return mathParser;
+    }
+}
@@ -0,0 +1,122 @@
+package functiondrawer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleExporterTest {
+    private final static String FORMULA = "sin(x)*x^2";
+    private final static double START = -50, END = 50;
+    private final static float STEP = 0.005f;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Plik CSV zawiera nagłówek i te same punkty co obliczenie evaluatorem, w ilości większej niż bufor zapisu
+     */
+    @Test
+    void csvRoundTrip() throws Exception {
+        Path path = directory.resolve("samples.csv");
+        long count = MathParser.getSampleCount(START, END, STEP);
+        export(FORMULA, SampleExporter.Format.CSV, path);
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals("# " + FORMULA + "; start=" + START + "; end=" + END + "; step=" + STEP + "; count=" + count, lines.get(0));
+        assertEquals("x,y", lines.get(1));
+        assertEquals(count + 2, lines.size());
+
+        Evaluator evaluator = createEvaluator(FORMULA);
+        for (int i = 0; i < count; i++) {
+            String[] values = lines.get(i + 2).split(",");
+            double x = MathParser.getSampleX(START, STEP, i);
+            assertEquals(x, Double.parseDouble(values[0]));
+            assertEquals(evaluator.applyAsDouble(x), Double.parseDouble(values[1]));
+        }
+    }
+
+    @Test
+    void binaryRoundTrip() throws Exception {
+        Path path = directory.resolve("samples.bin");
+        long bytes = export(FORMULA, SampleExporter.Format.BINARY, path);
+        assertEquals(Files.size(path), bytes);
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(FORMULA, readHeader(buffer));
+        assertEquals(START, buffer.getDouble());
+        assertEquals(END, buffer.getDouble());
+        assertEquals(STEP, buffer.getFloat());
+        long count = buffer.getLong();
+        assertEquals(MathParser.getSampleCount(START, END, STEP), count);
+        assertEquals(count * 2 * Double.BYTES, buffer.remaining());
+
+        Evaluator evaluator = createEvaluator(FORMULA);
+        for (int i = 0; i < count; i++) {
+            double x = MathParser.getSampleX(START, STEP, i);
+            assertEquals(x, buffer.getDouble());
+            assertEquals(evaluator.applyAsDouble(x), buffer.getDouble());
+        }
+    }
+
+    /**
+     * Wzór dłuższy niż bufor zapisu jest zapisywany w nagłówku w całości
+     */
+    @Test
+    void headerLongerThanBufferIsWritten() throws Exception {
+        StringBuilder formula = new StringBuilder("x");
+        while (formula.length() < 300_000)
+            formula.append("+x");
+
+        Path binary = directory.resolve("long.bin");
+        SampleExporter.export(createEvaluator("x"), formula.toString(), 0, 1, 0.5f, SampleExporter.Format.BINARY, binary, null);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(binary)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(formula.toString(), readHeader(buffer));
+        buffer.position(buffer.position() + 2 * Double.BYTES + Float.BYTES);
+        assertEquals(3, buffer.getLong());
+
+        Path csv = directory.resolve("long.csv");
+        SampleExporter.export(createEvaluator("x"), formula.toString(), 0, 1, 0.5f, SampleExporter.Format.CSV, csv, null);
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).startsWith("# " + formula + "; start="));
+        assertEquals(List.of("x,y", "0.0,0.0", "0.5,0.5", "1.0,1.0"), lines.subList(1, lines.size()));
+    }
+
+    @Test
+    void invertedOrUnboundedRangesAreRejected() throws ParserException {
+        Evaluator evaluator = createEvaluator("x");
+        Path path = directory.resolve("rejected.bin");
+
+        double[][] ranges = {{1, 0, 0.5}, {0, 1, 0}, {0, 1, -0.5}, {0, Double.POSITIVE_INFINITY, 1}, {Double.NaN, 1, 1}};
+        for (double[] range : ranges)
+            assertThrows(IllegalArgumentException.class, () -> SampleExporter.export(evaluator, "x", range[0], range[1],
+                    (float) range[2], SampleExporter.Format.BINARY, path, null));
+        assertFalse(Files.exists(path));
+    }
+
+    private static long export(String formula, SampleExporter.Format format, Path path) throws ParserException, IOException {
+        return SampleExporter.export(createEvaluator(formula), formula, START, END, STEP, format, path, null);
+    }
+
+    private static String readHeader(ByteBuffer buffer) {
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        assertEquals("FDS1", new String(magic, StandardCharsets.US_ASCII));
+
+        byte[] formula = new byte[buffer.getInt()];
+        buffer.get(formula);
+        return new String(formula, StandardCharsets.UTF_8);
+    }
+
+    private static Evaluator createEvaluator(String formula) throws ParserException {
+        return new MathParser().createEvaluator(formula);
+    }
+}